@@ -1,13 +1,24 @@
 package aiss.gitminer;
 
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GitMinerApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(GitMinerApplication.class, args);
 	}
 
+	// Serialize every property of @JsonFilter entities unless a response sets its own filters
+	@Bean
+	public Jackson2ObjectMapperBuilderCustomizer jsonFilters() {
+		return builder -> builder.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+	}
+
 }
@@ -0,0 +1,45 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.service.CacheRegionStats;
+import aiss.gitminer.service.EntityCacheService;
+import aiss.gitminer.service.JsonResponseCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Tag(name="Cache", description= "Entity cache API")
+@RestController
+@RequestMapping("/gitminer/cache")
+public class CacheController {
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @Operation(
+            summary = "Retrieve the cache statistics",
+            description = "Get the size, hits, misses and evictions of each region of the entity cache, and of " +
+                    "the serialized projects and issues (region responses)",
+            tags = {"Cache", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema =
+            @Schema(implementation = CacheRegionStats.class)), mediaType = "application/json")})
+    })
+    @GetMapping
+    public List<CacheRegionStats> findStats() {
+        List<CacheRegionStats> stats = entityCacheService.getStats();
+        stats.add(jsonResponseCache.getStats());
+        return stats;
+    }
+}
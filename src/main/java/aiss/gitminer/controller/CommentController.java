@@ -1,8 +1,24 @@
 package aiss.gitminer.controller;
 
 import aiss.gitminer.exception.CommentNotFoundException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFieldException;
+import aiss.gitminer.exception.InvalidOrderException;
+import aiss.gitminer.exception.PreconditionFailedException;
 import aiss.gitminer.model.Comment;
 import aiss.gitminer.repository.CommentRepository;
+import aiss.gitminer.repository.Cursor;
+import aiss.gitminer.repository.KeysetRepository;
+import aiss.gitminer.repository.ProjectedSlice;
+import aiss.gitminer.repository.Ordering;
+import aiss.gitminer.repository.ProjectionRepository;
+import aiss.gitminer.repository.Range;
+import aiss.gitminer.repository.MultiGetRepository;
+import aiss.gitminer.repository.MultiGetResult;
+import aiss.gitminer.service.EntityCacheService;
+import aiss.gitminer.service.EntityVersion;
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.ProjectImportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,13 +30,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Comment", description= "Comment management API")
@@ -31,33 +54,83 @@ public class CommentController {
     @Autowired
     CommentRepository commentRepository;
 
+    @Autowired
+    KeysetRepository keysetRepository;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    ProjectImportService projectImportService;
+
+    @Autowired
+    MultiGetRepository multiGetRepository;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
     @Operation(
             summary = "Retrieve all comments",
-            description = "Get all Comment objects",
+            description = "Get all Comment objects, by page number or, with a cursor, by keyset " +
+                    "(the cursor of the next page is returned in the X-Next-Cursor header)",
             tags = {"Comment", "Get"}
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Comment.class),
-                    mediaType = "application/json")})
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping
-    public List<Comment> findAll(@Parameter(description = "Page number to be retrieved")@RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<List<?>> findAll(@Parameter(description = "Page number to be retrieved")@RequestParam(defaultValue = "0") int page,
                                  @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size,
                                  @Parameter(description = "id of the author to be filtered") @RequestParam(required = false) String authorId,
-                                 @Parameter(description = "order of the request retrieved") @RequestParam(required = false) String order) {
+                                 @Parameter(description = "comma-separated keys to sort by, \"-\" prefixed for descending order, among id, createdAt, author.id") @RequestParam(required = false) String order,
+                                 @Parameter(description = "earliest creation date to be retrieved (inclusive), ISO-8601") @RequestParam(required = false) Instant since,
+                                 @Parameter(description = "latest creation date to be retrieved (exclusive), ISO-8601") @RequestParam(required = false) Instant until,
+                                 @Parameter(description = "cursor of the page to be retrieved, empty for the first one") @RequestParam(required = false) String cursor,
+                                 @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                                 WebRequest request)
+                                 throws InvalidCursorException, InvalidFieldException, InvalidOrderException {
+
+        Optional<EntityVersion> version = entityVersionService.ofComments();
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
 
-        Pageable paging;
+        Map<String, Object> filters = new HashMap<>();
+        filters.put("author.id", authorId);
+        filters.put("createdAt", Range.of(since, until));
 
-        if(order != null) {
-            if(order.startsWith("-")) {
-                paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-            }else {
-                paging = PageRequest.of(page, size, Sort.by(order).ascending());
+        if (fields != null) {
+            ProjectedSlice slice;
+            if (cursor != null) {
+                Sort.Order sortOrder = Ordering.parseKey(Comment.class, order);
+                slice = projectionRepository.findSlice(Comment.class, fields, filters, sortOrder,
+                        Cursor.decode(cursor, Comment.class, sortOrder), size);
+            } else {
+                slice = projectionRepository.findPage(Comment.class, fields, filters, Ordering.parse(Comment.class, order),
+                        page, size);
             }
-        }else {
-            paging = PageRequest.of(page, size);
+            return Cursor.response(slice.getContent(), slice.getNextCursor());
+        }
+
+        if (cursor != null) {
+            Sort.Order sortOrder = Ordering.parseKey(Comment.class, order);
+            Slice<Comment> slice = keysetRepository.findSlice(Comment.class,
+                    filters, sortOrder, Cursor.decode(cursor, Comment.class, sortOrder), size);
+            return Cursor.response(slice, sortOrder);
+        }
+
+        if (since != null || until != null) {
+            return ResponseEntity.ok(keysetRepository.findPage(Comment.class, filters, Ordering.parse(Comment.class, order), page, size)
+                    .getContent());
         }
 
+        Pageable paging = PageRequest.of(page, size, Ordering.parse(Comment.class, order));
+
         Page<Comment> pageComments;
 
         if (authorId != null) {
@@ -65,7 +138,37 @@ public class CommentController {
         }else {
             pageComments = commentRepository.findAll(paging);
         }
-        return pageComments.getContent();
+        return ResponseEntity.ok(pageComments.getContent());
+    }
+
+    @Operation(
+            summary = "Retrieve comments by id",
+            description = "Get the Comment objects with the given ids, in the order of the ids, and the ids not found",
+            tags = {"Comment", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")})
+    })
+    @GetMapping(params = "ids")
+    public MultiGetResult<Comment> findAllById(@Parameter(description = "comma-separated ids of the comments to be searched") @RequestParam List<String> ids) {
+        return multiGetRepository.findAllById(Comment.class, ids, Comment::getId);
+    }
+
+    @Operation(
+            summary = "Retrieve comments by id",
+            description = "Get the Comment objects with the ids of a JSON array, in the order of the ids, and the ids " +
+                    "not found, for id lists too long for a URL",
+            tags = {"Comment", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/lookup")
+    public MultiGetResult<Comment> lookup(@RequestBody List<String> ids) {
+        return findAllById(ids);
     }
 
     @Operation(
@@ -76,11 +179,21 @@ public class CommentController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Comment.class),
                     mediaType = "application/json")}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Comment findById(@Parameter(description= "id of a comment to be searched") @PathVariable String id)
-            throws CommentNotFoundException {
+    public Object findById(@Parameter(description= "id of a comment to be searched") @PathVariable String id,
+                     @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                     WebRequest request)
+            throws CommentNotFoundException, InvalidFieldException {
+        Optional<EntityVersion> version = entityVersionService.ofComment(id);
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
+        if (fields != null) {
+            return projectionRepository.findById(Comment.class, fields, id).orElseThrow(CommentNotFoundException::new);
+        }
         Optional<Comment> comment = commentRepository.findById(id);
 
         if (!comment.isPresent()) {
@@ -102,7 +215,7 @@ public class CommentController {
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Comment createComment(@RequestBody @Valid Comment comm) {
-        Comment comment = commentRepository.save(comm);
+        Comment comment = projectImportService.importComment(comm);
         return comment;
     }
 
@@ -114,20 +227,26 @@ public class CommentController {
     @ApiResponses({
             @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
             @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "412", content = {@Content(schema = @Schema())})
     })
+    // Holds the lock taken by the If-Match check until the update is written
+    @Transactional
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateComment(@RequestBody @Valid Comment updatedComment,
-                              @Parameter(description="id of a comment to be updated")@PathVariable String id)
-            throws CommentNotFoundException {
+                              @Parameter(description="id of a comment to be updated")@PathVariable String id,
+                              @Parameter(description = "ETag of the comment as read, to update it only if unchanged")
+                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws CommentNotFoundException, PreconditionFailedException {
+        entityVersionService.checkIfMatch(ifMatch, "Comment", id);
         Optional<Comment> commData = commentRepository.findById(id);
         if (!commData.isPresent()) {
             throw new CommentNotFoundException();
         } else {
             Comment comment = commData.get();
             comment.setBody(updatedComment.getBody());
-            comment.setUpdatedAt(LocalDateTime.now().toString());
+            comment.setUpdatedAt(Instant.now());
             commentRepository.save(comment);
         }
     }
@@ -146,7 +265,10 @@ public class CommentController {
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteComment(@Parameter(description = "id of a comment to be deleted")@PathVariable String id) {
         if (commentRepository.existsById(id)) {
+            // Hibernate does not update the list of comments of the issue on a delete of the comment alone
+            String issueId = commentRepository.findIssueId(id);
             commentRepository.deleteById(id);
+            entityCacheService.evictCollection(EntityCacheService.ISSUE_COMMENTS, issueId);
         }
     }
 
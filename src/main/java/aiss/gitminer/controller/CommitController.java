@@ -1,8 +1,23 @@
 package aiss.gitminer.controller;
 
 import aiss.gitminer.exception.CommitNotFoundException;
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFieldException;
+import aiss.gitminer.exception.InvalidOrderException;
+import aiss.gitminer.exception.PreconditionFailedException;
 import aiss.gitminer.model.Commit;
 import aiss.gitminer.repository.CommitRepository;
+import aiss.gitminer.repository.Cursor;
+import aiss.gitminer.repository.KeysetRepository;
+import aiss.gitminer.repository.ProjectedSlice;
+import aiss.gitminer.repository.Ordering;
+import aiss.gitminer.repository.ProjectionRepository;
+import aiss.gitminer.repository.Range;
+import aiss.gitminer.repository.MultiGetRepository;
+import aiss.gitminer.repository.MultiGetResult;
+import aiss.gitminer.service.EntityCacheService;
+import aiss.gitminer.service.EntityVersion;
+import aiss.gitminer.service.EntityVersionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,12 +29,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Commit", description= "Commit management API")
@@ -30,33 +53,80 @@ public class CommitController {
     @Autowired
     CommitRepository commitRepository;
 
+    @Autowired
+    KeysetRepository keysetRepository;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    MultiGetRepository multiGetRepository;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
     @Operation(
             summary = "Retrieve all commits",
-            description = "Get all Commit objects",
+            description = "Get all Commit objects, by page number or, with a cursor, by keyset " +
+                    "(the cursor of the next page is returned in the X-Next-Cursor header)",
             tags = {"Commit", "Get"}
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Commit.class),
-                    mediaType = "application/json")})
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping
-    public List<Commit> findAll(@Parameter(description = "Page number to be retrieved") @RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<List<?>> findAll(@Parameter(description = "Page number to be retrieved") @RequestParam(defaultValue = "0") int page,
                                 @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size,
                                 @Parameter(description = "name of the author to be filtered") @RequestParam(required = false) String authorName,
-                                @Parameter(description = "order of the request retrieved") @RequestParam(required = false) String order) {
+                                @Parameter(description = "comma-separated keys to sort by, \"-\" prefixed for descending order, among id, authoredDate, authorName") @RequestParam(required = false) String order,
+                                @Parameter(description = "earliest authored date to be retrieved (inclusive), ISO-8601") @RequestParam(required = false) Instant since,
+                                @Parameter(description = "latest authored date to be retrieved (exclusive), ISO-8601") @RequestParam(required = false) Instant until,
+                                @Parameter(description = "cursor of the page to be retrieved, empty for the first one") @RequestParam(required = false) String cursor,
+                                @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                                WebRequest request)
+                                throws InvalidCursorException, InvalidFieldException, InvalidOrderException {
 
-        Pageable paging;
+        Optional<EntityVersion> version = entityVersionService.ofCommits();
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
 
-        if(order != null) {
-            if(order.startsWith("-")) {
-                paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-            }else {
-                paging = PageRequest.of(page, size, Sort.by(order).ascending());
+        Map<String, Object> filters = new HashMap<>();
+        filters.put("authorName", authorName);
+        filters.put("authoredDate", Range.of(since, until));
+
+        if (fields != null) {
+            ProjectedSlice slice;
+            if (cursor != null) {
+                Sort.Order sortOrder = Ordering.parseKey(Commit.class, order);
+                slice = projectionRepository.findSlice(Commit.class, fields, filters, sortOrder,
+                        Cursor.decode(cursor, Commit.class, sortOrder), size);
+            } else {
+                slice = projectionRepository.findPage(Commit.class, fields, filters, Ordering.parse(Commit.class, order),
+                        page, size);
             }
-        }else {
-            paging = PageRequest.of(page, size);
+            return Cursor.response(slice.getContent(), slice.getNextCursor());
         }
 
+        if (cursor != null) {
+            Sort.Order sortOrder = Ordering.parseKey(Commit.class, order);
+            Slice<Commit> slice = keysetRepository.findSlice(Commit.class,
+                    filters, sortOrder, Cursor.decode(cursor, Commit.class, sortOrder), size);
+            return Cursor.response(slice, sortOrder);
+        }
+
+        if (since != null || until != null) {
+            return ResponseEntity.ok(keysetRepository.findPage(Commit.class, filters, Ordering.parse(Commit.class, order), page, size)
+                    .getContent());
+        }
+
+        Pageable paging = PageRequest.of(page, size, Ordering.parse(Commit.class, order));
+
         Page<Commit> pageCommits;
 
         if (authorName != null) {
@@ -64,7 +134,37 @@ public class CommitController {
         }else {
             pageCommits = commitRepository.findAll(paging);
         }
-        return pageCommits.getContent();
+        return ResponseEntity.ok(pageCommits.getContent());
+    }
+
+    @Operation(
+            summary = "Retrieve commits by id",
+            description = "Get the Commit objects with the given ids, in the order of the ids, and the ids not found",
+            tags = {"Commit", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")})
+    })
+    @GetMapping(params = "ids")
+    public MultiGetResult<Commit> findAllById(@Parameter(description = "comma-separated ids of the commits to be searched") @RequestParam List<String> ids) {
+        return multiGetRepository.findAllById(Commit.class, ids, Commit::getId);
+    }
+
+    @Operation(
+            summary = "Retrieve commits by id",
+            description = "Get the Commit objects with the ids of a JSON array, in the order of the ids, and the ids " +
+                    "not found, for id lists too long for a URL",
+            tags = {"Commit", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/lookup")
+    public MultiGetResult<Commit> lookup(@RequestBody List<String> ids) {
+        return findAllById(ids);
     }
 
     @Operation(
@@ -75,10 +175,21 @@ public class CommitController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Commit.class),
                     mediaType = "application/json")}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Commit findOne(@Parameter(description= "id of a commit to be searched")@PathVariable String id) throws CommitNotFoundException {
+    public Object findOne(@Parameter(description= "id of a commit to be searched") @PathVariable String id,
+                     @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                     WebRequest request)
+            throws CommitNotFoundException, InvalidFieldException {
+        Optional<EntityVersion> version = entityVersionService.ofCommit(id);
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
+        if (fields != null) {
+            return projectionRepository.findById(Commit.class, fields, id).orElseThrow(CommitNotFoundException::new);
+        }
         Optional<Commit> commit = commitRepository.findById(id);
 
         if (!commit.isPresent()) {
@@ -112,13 +223,19 @@ public class CommitController {
     @ApiResponses({
             @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
             @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "412", content = {@Content(schema = @Schema())})
     })
+    // Holds the lock taken by the If-Match check until the update is written
+    @Transactional
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateCommit(@RequestBody @Valid Commit updatedComm,
-                             @Parameter(description="id of a commit to be updated") @PathVariable String id)
-            throws CommitNotFoundException {
+                             @Parameter(description="id of a commit to be updated") @PathVariable String id,
+                             @Parameter(description = "ETag of the commit as read, to update it only if unchanged")
+                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws CommitNotFoundException, PreconditionFailedException {
+        entityVersionService.checkIfMatch(ifMatch, "Commit", id);
         Optional<Commit> commData = commitRepository.findById(id);
 
         if (commData.isPresent()) {
@@ -146,7 +263,10 @@ public class CommitController {
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteCommit(@Parameter(description = "id of a comment to be deleted")@PathVariable String id) {
         if (commitRepository.existsById(id)) {
+            // Hibernate does not update the list of commits of the project on a delete of the commit alone
+            String projectId = commitRepository.findProjectId(id);
             commitRepository.deleteById(id);
+            entityCacheService.evictCollection(EntityCacheService.PROJECT_COMMITS, projectId);
         }
     }
 }
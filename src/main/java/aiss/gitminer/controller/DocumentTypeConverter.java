@@ -0,0 +1,17 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.service.DocumentType;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+// Reads document types by their JSON name, e.g. "commit"
+@Component
+public class DocumentTypeConverter implements Converter<String, DocumentType> {
+
+    @Override
+    public DocumentType convert(String source) {
+        return DocumentType.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
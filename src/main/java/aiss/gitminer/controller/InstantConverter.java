@@ -0,0 +1,17 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.model.LenientInstantDeserializer;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+// Reads date request parameters the way the timestamps of the request bodies are read
+@Component
+public class InstantConverter implements Converter<String, Instant> {
+
+    @Override
+    public Instant convert(String source) {
+        return source.isBlank() ? null : LenientInstantDeserializer.parse(source);
+    }
+}
@@ -1,9 +1,27 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.exception.InvalidCursorException;
+import aiss.gitminer.exception.InvalidFieldException;
+import aiss.gitminer.exception.InvalidOrderException;
 import aiss.gitminer.exception.IssueNotFoundException;
+import aiss.gitminer.exception.PreconditionFailedException;
 import aiss.gitminer.model.Comment;
 import aiss.gitminer.model.Issue;
+import aiss.gitminer.repository.Cursor;
 import aiss.gitminer.repository.IssueRepository;
+import aiss.gitminer.repository.KeysetRepository;
+import aiss.gitminer.repository.ProjectedSlice;
+import aiss.gitminer.repository.Ordering;
+import aiss.gitminer.repository.ProjectionRepository;
+import aiss.gitminer.repository.Range;
+import aiss.gitminer.repository.MultiGetRepository;
+import aiss.gitminer.repository.MultiGetResult;
+import aiss.gitminer.service.EntityCacheService;
+import aiss.gitminer.service.EntityVersion;
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.IssueWriteBehindBuffer;
+import aiss.gitminer.service.JsonResponseCache;
+import aiss.gitminer.service.ProjectImportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -15,13 +33,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Tag(name="Issue", description= "Issue management API")
@@ -32,34 +58,98 @@ public class IssueController {
     @Autowired
     IssueRepository issueRepository;
 
+    @Autowired
+    KeysetRepository keysetRepository;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    ProjectImportService projectImportService;
+
+    @Autowired
+    IssueWriteBehindBuffer issueWriteBehindBuffer;
+
+    @Autowired
+    MultiGetRepository multiGetRepository;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
     @Operation(
             summary = "Retrieve all issues",
-            description = "Get all Issue objects",
+            description = "Get all Issue objects, by page number or, with a cursor, by keyset " +
+                    "(the cursor of the next page is returned in the X-Next-Cursor header)",
             tags = {"Issue", "Get"}
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Issue.class),
-                    mediaType = "application/json")})
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping
-    public List<Issue> findAll(@Parameter(description = "page number to be retrieved")@RequestParam(defaultValue = "0") int page,
+    public ResponseEntity<List<?>> findAll(@Parameter(description = "page number to be retrieved")@RequestParam(defaultValue = "0") int page,
                                @Parameter(description = "page size to be retrieved") @RequestParam(defaultValue = "10") int size,
                                @Parameter(description = "id of the author to be filtered") @RequestParam(required = false) String authorId,
                                @Parameter(description = "state of the issue to be filtered") @RequestParam(required = false) String state,
-                               @Parameter(description = "order of the request to be retrieved") @RequestParam(required = false) String order) {
+                               @Parameter(description = "comma-separated keys to sort by, \"-\" prefixed for descending order, among id, createdAt, author.id") @RequestParam(required = false) String order,
+                               @Parameter(description = "earliest creation date to be retrieved (inclusive), ISO-8601") @RequestParam(required = false) Instant since,
+                               @Parameter(description = "latest creation date to be retrieved (exclusive), ISO-8601") @RequestParam(required = false) Instant until,
+                               @Parameter(description = "cursor of the page to be retrieved, empty for the first one") @RequestParam(required = false) String cursor,
+                               @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                               WebRequest request)
+                               throws InvalidCursorException, InvalidFieldException, InvalidOrderException {
+
+        Optional<EntityVersion> version = entityVersionService.ofIssues();
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
 
-        Pageable paging;
+        Map<String, Object> filters = new HashMap<>();
+        filters.put("state", state);
+        filters.put("author.id", authorId);
+        filters.put("createdAt", Range.of(since, until));
 
-        if(order != null) {
-            if(order.startsWith("-")) {
-                paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-            }else {
-                paging = PageRequest.of(page, size, Sort.by(order).ascending());
+        if (fields != null) {
+            ProjectedSlice slice;
+            if (cursor != null) {
+                Sort.Order sortOrder = Ordering.parseKey(Issue.class, order);
+                slice = projectionRepository.findSlice(Issue.class, fields, filters, sortOrder,
+                        Cursor.decode(cursor, Issue.class, sortOrder), size);
+            } else {
+                slice = projectionRepository.findPage(Issue.class, fields, filters, Ordering.parse(Issue.class, order),
+                        page, size);
             }
-        }else {
-            paging = PageRequest.of(page, size);
+            for (int i = 0; i < slice.getNumberOfElements(); i++) {
+                issueWriteBehindBuffer.overlay(slice.getIds().get(i), slice.getContent().get(i));
+            }
+            return Cursor.response(slice.getContent(), slice.getNextCursor());
+        }
+
+        if (cursor != null) {
+            Sort.Order sortOrder = Ordering.parseKey(Issue.class, order);
+            Slice<Issue> slice = keysetRepository.findSlice(Issue.class, filters, sortOrder,
+                    Cursor.decode(cursor, Issue.class, sortOrder), size);
+            String next = Cursor.next(slice, sortOrder);
+            slice.getContent().forEach(issueWriteBehindBuffer::overlay);
+            return Cursor.response(slice.getContent(), next);
+        }
+
+        if (since != null || until != null) {
+            List<Issue> issues = keysetRepository.findPage(Issue.class, filters, Ordering.parse(Issue.class, order), page, size)
+                    .getContent();
+            issues.forEach(issueWriteBehindBuffer::overlay);
+            return ResponseEntity.ok(issues);
         }
 
+        Pageable paging = PageRequest.of(page, size, Ordering.parse(Issue.class, order));
+
         Page<Issue> pageIssues;
 
         if (authorId != null && state != null) {
@@ -72,7 +162,40 @@ public class IssueController {
             pageIssues = issueRepository.findAll(paging);
         }
 
-        return pageIssues.getContent();
+        pageIssues.getContent().forEach(issueWriteBehindBuffer::overlay);
+        return ResponseEntity.ok(pageIssues.getContent());
+    }
+
+    @Operation(
+            summary = "Retrieve issues by id",
+            description = "Get the Issue objects with the given ids, in the order of the ids, and the ids not found",
+            tags = {"Issue", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")})
+    })
+    @GetMapping(params = "ids")
+    public MultiGetResult<Issue> findAllById(@Parameter(description = "comma-separated ids of the issues to be searched") @RequestParam List<String> ids) {
+        MultiGetResult<Issue> result = multiGetRepository.findAllById(Issue.class, ids, Issue::getId);
+        result.getItems().forEach(issueWriteBehindBuffer::overlay);
+        return result;
+    }
+
+    @Operation(
+            summary = "Retrieve issues by id",
+            description = "Get the Issue objects with the ids of a JSON array, in the order of the ids, and the ids " +
+                    "not found, for id lists too long for a URL",
+            tags = {"Issue", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/lookup")
+    public MultiGetResult<Issue> lookup(@RequestBody List<String> ids) {
+        return findAllById(ids);
     }
 
     @Operation(
@@ -83,37 +206,86 @@ public class IssueController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Issue.class),
                     mediaType = "application/json")}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Issue findOne(@Parameter(description= "id of an issue to be searched")@PathVariable String id) throws IssueNotFoundException {
+    public Object findOne(@Parameter(description= "id of an issue to be searched") @PathVariable String id,
+                     @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                     WebRequest request)
+            throws IssueNotFoundException, InvalidFieldException {
+        Optional<EntityVersion> version = entityVersionService.ofIssue(id);
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
+        if (fields != null) {
+            Map<String, Object> issue = projectionRepository.findById(Issue.class, fields, id)
+                    .orElseThrow(IssueNotFoundException::new);
+            issueWriteBehindBuffer.overlay(id, issue);
+            return issue;
+        }
+        // Issues with buffered updates have no version, and are overlaid
+        if (version.isPresent()) {
+            return jsonResponseCache.find(Issue.class, id, version.get(), request, () -> issueRepository.findById(id))
+                    .orElseThrow(IssueNotFoundException::new);
+        }
         Optional<Issue> issue = issueRepository.findById(id);
 
         if (!issue.isPresent()) {
             throw new IssueNotFoundException();
         }
-        return issue.get();
+        return issueWriteBehindBuffer.overlay(issue.get());
     }
 
     @Operation(
-            summary = "Retrieve all comments of an issue by id",
-            description = "Get all Comment objects of an Issue object specifying its id, if not found throws an Exception",
+            summary = "Retrieve the comments of an issue by id",
+            description = "Get the Comment objects of an Issue object specifying its id, oldest first, by keyset " +
+                    "(the cursor of the next page is returned in the X-Next-Cursor header), if not found throws " +
+                    "an Exception",
             tags = {"Issue", "Get"}
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Comment.class),
                     mediaType = "application/json")}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}/comments")
-    public List<Comment> findOneComments(@Parameter(description = "id of an issue to be searched") @PathVariable String id)
-            throws IssueNotFoundException {
-        Optional<Issue> issue = issueRepository.findById(id);
-
-        if (!issue.isPresent()) {
+    public ResponseEntity<List<?>> findOneComments(@Parameter(description = "id of an issue to be searched") @PathVariable String id,
+                                                   @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size,
+                                                   @Parameter(description = "createdAt, or -createdAt for the newest first") @RequestParam(required = false) String order,
+                                                   @Parameter(description = "cursor of the page to be retrieved, absent or empty for the first one") @RequestParam(defaultValue = "") String cursor,
+                                                   @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                                                   WebRequest request)
+            throws IssueNotFoundException, InvalidCursorException, InvalidFieldException, InvalidOrderException {
+        Sort.Order sortOrder = Ordering.parseKey(Comment.class, order == null ? "createdAt" : order);
+        // Only the creation date is indexed within an issue
+        if (!sortOrder.getProperty().equals("createdAt")) {
+            throw new InvalidOrderException();
+        }
+        Cursor after = Cursor.decode(cursor, Comment.class, sortOrder);
+        Optional<EntityVersion> version = entityVersionService.ofIssue(id);
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
+        if (!issueRepository.existsById(id)) {
             throw new IssueNotFoundException();
         }
-        return issue.get().getComments();
+        Map<String, Object> filters = Collections.singletonMap("issueId", id);
+
+        List<?> content;
+        String next;
+        if (fields != null) {
+            ProjectedSlice slice = projectionRepository.findSlice(Comment.class, fields, filters, sortOrder, after, size);
+            content = slice.getContent();
+            next = slice.getNextCursor();
+        } else {
+            Slice<Comment> slice = keysetRepository.findSlice(Comment.class, filters, sortOrder, after, size);
+            content = slice.getContent();
+            next = Cursor.next(slice, sortOrder);
+        }
+        return Cursor.response(content, next);
     }
 
     @Operation(
@@ -129,7 +301,7 @@ public class IssueController {
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Issue createCommit(@RequestBody @Valid Issue iss) {
-        Issue issue = issueRepository.save(iss);
+        Issue issue = projectImportService.importIssue(iss);
         return issue;
     }
 
@@ -141,13 +313,27 @@ public class IssueController {
     @ApiResponses({
             @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
             @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "412", content = {@Content(schema = @Schema())})
     })
+    // Holds the lock taken by the If-Match check until the update is written
+    @Transactional
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateCommit(@RequestBody @Valid Issue updatedIss,
-                             @Parameter(description= "id of an issue to be updated") @PathVariable String id)
-            throws IssueNotFoundException {
+                             @Parameter(description= "id of an issue to be updated") @PathVariable String id,
+                             @Parameter(description = "ETag of the issue as read, to update it only if unchanged")
+                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws IssueNotFoundException, PreconditionFailedException {
+        entityVersionService.checkIfMatch(ifMatch, "Issue", id);
+        if (issueWriteBehindBuffer.isEnabled()) {
+            if (!issueRepository.existsById(id)) {
+                throw new IssueNotFoundException();
+            }
+            issueWriteBehindBuffer.update(id, updatedIss);
+            return;
+        }
+
         Optional<Issue> issData = issueRepository.findById(id);
 
         if (issData.isPresent()) {
@@ -155,10 +341,10 @@ public class IssueController {
 
             issue.setState(updatedIss.getState());
 
-            issue.setUpdatedAt(LocalDateTime.now().toString());
+            issue.setUpdatedAt(Instant.now());
 
-            if (updatedIss.getState().equals("closed")) {
-                issue.setClosedAt(LocalDateTime.now().toString());
+            if ("closed".equals(updatedIss.getState())) {
+                issue.setClosedAt(Instant.now());
             }
 
             issue.setLabels(updatedIss.getLabels());
@@ -170,6 +356,50 @@ public class IssueController {
 
     }
 
+    @Operation(
+            summary = "Vote an issue by id",
+            description = "Add a vote to an Issue object specifying its id, in a single update that does not read it",
+            tags = {"Issue", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/{id}/votes:increment")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void incrementVotes(@Parameter(description= "id of an issue to be voted") @PathVariable String id)
+            throws IssueNotFoundException {
+        issueWriteBehindBuffer.settle(id);
+        if (issueRepository.incrementVotes(id, Instant.now()) == 0) {
+            throw new IssueNotFoundException();
+        }
+        entityCacheService.evict(Issue.class, Collections.singletonList(id));
+    }
+
+    @Operation(
+            summary = "Close an issue by id",
+            description = "Close an Issue object specifying its id, in a single update that does not read it. "
+                    + "Closing a closed issue changes nothing",
+            tags = {"Issue", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/{id}:close")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void closeIssue(@Parameter(description= "id of an issue to be closed") @PathVariable String id)
+            throws IssueNotFoundException {
+        issueWriteBehindBuffer.settle(id);
+        if (issueRepository.close(id, Instant.now()) == 0) {
+            if (!issueRepository.existsById(id)) {
+                throw new IssueNotFoundException();
+            }
+            return;
+        }
+        entityCacheService.evict(Issue.class, Collections.singletonList(id));
+    }
+
     @Operation(
             summary = "Delete an issue by id",
             description = "Delete an Issue object specifying its id",
@@ -184,7 +414,10 @@ public class IssueController {
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteCommit(@Parameter(description= "id of an issue to be deleted")@PathVariable String id) {
         if (issueRepository.existsById(id)) {
+            // Hibernate does not update the list of issues of the project on a delete of the issue alone
+            String projectId = issueRepository.findProjectId(id);
             issueRepository.deleteById(id);
+            entityCacheService.evictCollection(EntityCacheService.PROJECT_ISSUES, projectId);
         }
     }
 }
@@ -0,0 +1,46 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.exception.JobNotFoundException;
+import aiss.gitminer.service.ImportJob;
+import aiss.gitminer.service.ImportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+
+@Tag(name="Job", description= "Asynchronous import job API")
+@RestController
+@RequestMapping("/gitminer/jobs")
+public class JobController {
+
+    @Autowired
+    ImportJobService importJobService;
+
+    @Operation(
+            summary = "Retrieve an import job by id",
+            description = "Get the status, progress and failure reason of an asynchronous import job",
+            tags = {"Job", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = ImportJob.class),
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}")
+    public ImportJob findOne(@Parameter(description = "id of a job to be searched") @PathVariable String id)
+            throws JobNotFoundException {
+        Optional<ImportJob> job = importJobService.findById(id);
+
+        if (!job.isPresent()) {
+            throw new JobNotFoundException();
+        }
+        return job.get();
+    }
+}
@@ -0,0 +1,43 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.model.CompressedText;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Leaves commit messages, issue descriptions and comment bodies out of list responses, so they are never
+ * inflated for listings. Single entities keep them, and lists include the ones named in {@code fields}.
+ */
+@ControllerAdvice
+public class LargeTextResponseAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(bodyContainer.getValue() instanceof Collection)) {
+            return;
+        }
+        Set<String> excluded = new HashSet<>(CompressedText.PROPERTIES);
+        List<String> fields = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().get("fields");
+        if (fields != null) {
+            fields.forEach(value -> excluded.removeAll(Arrays.asList(value.split(","))));
+        }
+        bodyContainer.setFilters(new SimpleFilterProvider()
+                .addFilter(CompressedText.FILTER, SimpleBeanPropertyFilter.serializeAllExcept(excluded)));
+    }
+}
@@ -1,8 +1,34 @@
 package aiss.gitminer.controller;
 
+import aiss.gitminer.exception.ForeignIdException;
+import aiss.gitminer.exception.ImportAbortedException;
+import aiss.gitminer.exception.ImportQueueFullException;
+import aiss.gitminer.exception.InvalidFieldException;
+import aiss.gitminer.exception.InvalidOrderException;
+import aiss.gitminer.exception.PreconditionFailedException;
 import aiss.gitminer.exception.ProjectNotFoundException;
 import aiss.gitminer.model.Project;
 import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.repository.Ordering;
+import aiss.gitminer.repository.ProjectionRepository;
+import aiss.gitminer.repository.MultiGetRepository;
+import aiss.gitminer.repository.MultiGetResult;
+import aiss.gitminer.service.EntityVersion;
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.ImportJob;
+import aiss.gitminer.service.ImportJobService;
+import aiss.gitminer.service.ImportReport;
+import aiss.gitminer.service.JsonResponseCache;
+import aiss.gitminer.service.ProjectDelta;
+import aiss.gitminer.service.ProjectDeleteService;
+import aiss.gitminer.service.ProjectExportService;
+import aiss.gitminer.service.ProjectImportService;
+import aiss.gitminer.service.ProjectStats;
+import aiss.gitminer.service.ProjectStatsService;
+import aiss.gitminer.service.ProjectSyncService;
+import aiss.gitminer.service.SyncResult;
+import aiss.gitminer.service.UpsertReport;
+import aiss.gitminer.service.UpsertService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,13 +40,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @Tag(name="Project", description= "Project management API")
 @RestController
@@ -29,6 +66,40 @@ public class ProjectController {
 
     @Autowired
     ProjectRepository projectRepository;
+
+    @Autowired
+    ProjectionRepository projectionRepository;
+
+    @Autowired
+    ProjectImportService projectImportService;
+
+    @Autowired
+    UpsertService upsertService;
+
+    @Autowired
+    ProjectSyncService projectSyncService;
+
+    @Autowired
+    ImportJobService importJobService;
+
+    @Autowired
+    ProjectDeleteService projectDeleteService;
+
+    @Autowired
+    ProjectExportService projectExportService;
+
+    @Autowired
+    ProjectStatsService projectStatsService;
+
+    @Autowired
+    MultiGetRepository multiGetRepository;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
     @Operation(
             summary = "Retrieve all projects",
             description = "Get all Project objects",
@@ -36,26 +107,30 @@ public class ProjectController {
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema =
-            @Schema(implementation = Project.class), mediaType = "application/json")})
+            @Schema(implementation = Project.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping
-    public List<Project> findAll(@Parameter(description = "Page number to be retrieved") @RequestParam(defaultValue = "0") int page,
-                                 @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size,
-                                 @Parameter(description = "atribute to be filtered") @RequestParam(required = false) String name,
-                                 @Parameter(description = "order of the request retrieved") @RequestParam(required = false) String order) {
-
-        Pageable paging;
-
-        if(order != null) {
-            if(order.startsWith("-")) {
-                paging = PageRequest.of(page, size, Sort.by(order.substring(1)).descending());
-            }else {
-                paging = PageRequest.of(page, size, Sort.by(order).ascending());
-            }
-        }else {
-            paging = PageRequest.of(page, size);
+    public List<?> findAll(@Parameter(description = "Page number to be retrieved") @RequestParam(defaultValue = "0") int page,
+                           @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size,
+                           @Parameter(description = "atribute to be filtered") @RequestParam(required = false) String name,
+                           @Parameter(description = "comma-separated keys to sort by, \"-\" prefixed for descending order, among id, name") @RequestParam(required = false) String order,
+                           @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                           WebRequest request)
+            throws InvalidFieldException, InvalidOrderException {
+
+        Optional<EntityVersion> version = entityVersionService.ofProjects();
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
         }
 
+        if (fields != null) {
+            return projectionRepository.findPage(Project.class, fields, Collections.singletonMap("name", name),
+                    Ordering.parse(Project.class, order), page, size).getContent();
+        }
+
+        Pageable paging = PageRequest.of(page, size, Ordering.parse(Project.class, order));
+
         Page<Project> pageProjects;
 
         if (name != null) {
@@ -66,6 +141,36 @@ public class ProjectController {
         return pageProjects.getContent();
     }
 
+    @Operation(
+            summary = "Retrieve projects by id",
+            description = "Get the Project objects with the given ids, in the order of the ids, and the ids not found",
+            tags = {"Project", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")})
+    })
+    @GetMapping(params = "ids")
+    public MultiGetResult<Project> findAllById(@Parameter(description = "comma-separated ids of the projects to be searched") @RequestParam List<String> ids) {
+        return multiGetRepository.findAllById(Project.class, ids, Project::getId);
+    }
+
+    @Operation(
+            summary = "Retrieve projects by id",
+            description = "Get the Project objects with the ids of a JSON array, in the order of the ids, and the ids " +
+                    "not found, for id lists too long for a URL",
+            tags = {"Project", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = MultiGetResult.class),
+                    mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/lookup")
+    public MultiGetResult<Project> lookup(@RequestBody List<String> ids) {
+        return findAllById(ids);
+    }
+
     @Operation(
             summary = "Retrieve a project by id",
             description = "Get a Project object specifying its id",
@@ -74,11 +179,25 @@ public class ProjectController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = Project.class),
                     mediaType = "application/json")}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "304", content = {@Content(schema = @Schema())})
     })
     @GetMapping("/{id}")
-    public Project findOne(@Parameter(description= "id of a project to be searched")@PathVariable String id)
-            throws ProjectNotFoundException {
+    public Object findOne(@Parameter(description= "id of a project to be searched")@PathVariable String id,
+                          @Parameter(description = "comma-separated fields to be retrieved, nested ones dotted") @RequestParam(required = false) String fields,
+                          WebRequest request)
+            throws ProjectNotFoundException, InvalidFieldException {
+        Optional<EntityVersion> version = entityVersionService.ofProject(id);
+        if (version.isPresent() && version.get().checkNotModified(request)) {
+            return null;
+        }
+        if (fields != null) {
+            return projectionRepository.findById(Project.class, fields, id).orElseThrow(ProjectNotFoundException::new);
+        }
+        if (version.isPresent()) {
+            return jsonResponseCache.find(Project.class, id, version.get(), request, () -> projectRepository.findById(id))
+                    .orElseThrow(ProjectNotFoundException::new);
+        }
         Optional<Project> proj = projectRepository.findById(id);
 
         if (!proj.isPresent()) {
@@ -87,6 +206,38 @@ public class ProjectController {
         return proj.get();
     }
 
+    @Operation(
+            summary = "Export a project",
+            description = "Stream a Project object specifying its id as newline-delimited JSON: the project, then " +
+                    "its commits, issues and comments, one per line with a type field. The stream is gzipped " +
+                    "when the request accepts it",
+            tags = {"Project", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(mediaType = "application/x-ndjson")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping(value = "/{id}/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportProject(@Parameter(description= "id of a project to be exported") @PathVariable String id,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws ProjectNotFoundException {
+        if (!projectRepository.existsById(id)) {
+            throw new ProjectNotFoundException();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(id + ".ndjson").build().toString());
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            return response.body(out -> projectExportService.export(id, out));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+            projectExportService.export(id, gzip);
+            gzip.finish();
+        });
+    }
+
     @Operation(
             summary = "Insert a project",
             description = "Create a new Project object",
@@ -100,10 +251,119 @@ public class ProjectController {
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Project createProject(@RequestBody @Valid Project project) {
-        Project proj = projectRepository.save(project);
+        Project proj = projectImportService.importProject(project);
         return proj;
     }
 
+    @Operation(
+            summary = "Insert or update a project",
+            description = "Upsert a Project object and all its children with batched MERGE statements, " +
+                    "skipping rows that did not change",
+            tags = {"Project", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema =
+            @Schema(implementation = UpsertReport.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "mode=upsert")
+    public UpsertReport upsertProject(@RequestBody @Valid Project project) {
+        return upsertService.upsertProject(project);
+    }
+
+    @Operation(
+            summary = "Insert a project asynchronously",
+            description = "Queue a Project object to be written by a background job and return the job to poll",
+            tags = {"Project", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", content = {@Content(schema =
+            @Schema(implementation = ImportJob.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "429", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping(params = "async=true")
+    public ResponseEntity<ImportJob> createProjectAsync(@RequestBody @Valid Project project)
+            throws ImportQueueFullException {
+        ImportJob job = importJobService.submit(project);
+        return ResponseEntity.accepted()
+                .location(URI.create("/gitminer/jobs/" + job.getId()))
+                .body(job);
+    }
+
+    @Operation(
+            summary = "Bulk insert projects",
+            description = "Create Project objects from a newline-delimited JSON stream, one project per line. " +
+                    "With parallel=true several projects are written concurrently, each in its own transaction",
+            tags = {"Project", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", content = {@Content(schema =
+            @Schema(implementation = ImportReport.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema =
+            @Schema(implementation = ImportReport.class), mediaType = "application/json")})
+    })
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public ImportReport importProjects(InputStream body,
+                                       @Parameter(description = "write projects concurrently")
+                                       @RequestParam(defaultValue = "false") boolean parallel)
+            throws IOException, ImportAbortedException {
+        return parallel ? projectImportService.importProjectsParallel(body) : projectImportService.importProjects(body);
+    }
+
+    @Operation(
+            summary = "Retrieve the sync watermark of a project",
+            description = "Get the latest authored/updated date among the commits, issues and comments of a Project",
+            tags = {"Project", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema =
+            @Schema(implementation = SyncResult.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/sync")
+    public SyncResult findWatermark(@Parameter(description = "id of a project to be searched") @PathVariable String id)
+            throws ProjectNotFoundException {
+        return projectSyncService.watermark(id);
+    }
+
+    @Operation(
+            summary = "Retrieve the statistics of a project",
+            description = "Get the commits per author, issues per state, mean time to close and comments per issue " +
+                    "of a Project specifying its id, aggregated by the database",
+            tags = {"Project", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema =
+            @Schema(implementation = ProjectStats.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping("/{id}/stats")
+    public ProjectStats findStats(@Parameter(description = "id of a project to be searched") @PathVariable String id)
+            throws ProjectNotFoundException {
+        return projectStatsService.stats(id);
+    }
+
+    @Operation(
+            summary = "Sync a project incrementally",
+            description = "Append or patch the commits, issues and comments changed since the last watermark " +
+                    "of a Project specifying its id, and return the new watermark",
+            tags = {"Project", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema =
+            @Schema(implementation = SyncResult.class), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "409", content = {@Content(schema = @Schema())})
+    })
+    @PostMapping("/{id}/sync")
+    public SyncResult syncProject(@RequestBody ProjectDelta delta,
+                                  @Parameter(description = "id of a project to be synced") @PathVariable String id)
+            throws ProjectNotFoundException, ForeignIdException {
+        return projectSyncService.sync(id, delta);
+    }
+
     @Operation(
             summary = "Update a project by id",
             description = "Update a project object specifying its id or throws an Exception if not exist",
@@ -112,13 +372,19 @@ public class ProjectController {
     @ApiResponses({
             @ApiResponse(responseCode = "204", content = {@Content(schema = @Schema())}),
             @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())}),
-            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())})
+            @ApiResponse(responseCode = "404", content = {@Content(schema = @Schema())}),
+            @ApiResponse(responseCode = "412", content = {@Content(schema = @Schema())})
     })
+    // Holds the lock taken by the If-Match check until the update is written
+    @Transactional
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateProject(@RequestBody @Valid Project updatedProject,
-                              @Parameter(description= "id of a project to be updated") @PathVariable String id)
-            throws ProjectNotFoundException {
+                              @Parameter(description= "id of a project to be updated") @PathVariable String id,
+                              @Parameter(description = "ETag of the project as read, to update it only if unchanged")
+                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws ProjectNotFoundException, PreconditionFailedException {
+        entityVersionService.checkIfMatch(ifMatch, "Project", id);
         Optional<Project> projData = projectRepository.findById(id);
 
         if (projData.isPresent()) {
@@ -144,8 +410,6 @@ public class ProjectController {
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteProject(@Parameter(description= "id of a project to be deleted")@PathVariable String id) {
-        if (projectRepository.existsById(id)) {
-            projectRepository.deleteById(id);
-        }
+        projectDeleteService.deleteProject(id);
     }
 }
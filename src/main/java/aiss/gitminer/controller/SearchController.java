@@ -0,0 +1,54 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.service.DocumentType;
+import aiss.gitminer.service.SearchHit;
+import aiss.gitminer.service.SearchResult;
+import aiss.gitminer.service.SearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+@Tag(name="Search", description= "Full-text search API")
+@RestController
+@RequestMapping("/gitminer/search")
+public class SearchController {
+
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    @Autowired
+    SearchService searchService;
+
+    @Operation(
+            summary = "Search commits, issues and comments",
+            description = "Get the commits (title and message), issues (title and description) and comments (body) " +
+                    "matching any of the words of the query, best matches first. The number of matches is returned " +
+                    "in the X-Total-Count header",
+            tags = {"Search", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(array = @ArraySchema(schema =
+                    @Schema(implementation = SearchHit.class)), mediaType = "application/json")}),
+            @ApiResponse(responseCode = "400", content = {@Content(schema = @Schema())})
+    })
+    @GetMapping
+    public ResponseEntity<List<SearchHit>> search(@Parameter(description = "words to be searched") @RequestParam String q,
+                                                  @Parameter(description = "types of documents to be searched (commit, issue, comment), all if absent") @RequestParam(required = false) Set<DocumentType> type,
+                                                  @Parameter(description = "Page number to be retrieved") @RequestParam(defaultValue = "0") int page,
+                                                  @Parameter(description = "Page size to be retrieved") @RequestParam(defaultValue = "10") int size) {
+        SearchResult result = searchService.search(q, type == null ? Collections.emptySet() : type, page, size);
+        return ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(result.getTotal()))
+                .body(result.getHits());
+    }
+}
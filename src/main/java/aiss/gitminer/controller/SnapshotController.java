@@ -0,0 +1,52 @@
+package aiss.gitminer.controller;
+
+import aiss.gitminer.service.SnapshotService;
+import aiss.gitminer.service.SnapshotStatus;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+@Tag(name="Snapshot", description= "Database snapshot API")
+@RestController
+@RequestMapping("/gitminer/snapshots")
+public class SnapshotController {
+
+    @Autowired
+    SnapshotService snapshotService;
+
+    @Operation(
+            summary = "Retrieve the snapshot status",
+            description = "Get the timings and sizes of the last snapshot written and of the startup restore",
+            tags = {"Snapshot", "Get"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = SnapshotStatus.class),
+                    mediaType = "application/json")})
+    })
+    @GetMapping
+    public SnapshotStatus findStatus() {
+        return snapshotService.getStatus();
+    }
+
+    @Operation(
+            summary = "Write a snapshot",
+            description = "Dump the whole database to the snapshot file now",
+            tags = {"Snapshot", "Post"}
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", content = {@Content(schema = @Schema(implementation = SnapshotStatus.class),
+                    mediaType = "application/json")})
+    })
+    @PostMapping
+    public SnapshotStatus createSnapshot() throws IOException, SQLException {
+        return snapshotService.snapshot();
+    }
+}
@@ -0,0 +1,8 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.CONFLICT, reason ="Some commits, issues or comments belong to another project")
+public class ForeignIdException extends Exception{
+}
@@ -1,5 +1,7 @@
 package aiss.gitminer.exception;
 
+import aiss.gitminer.service.ImportReport;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -8,6 +10,7 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,4 +32,20 @@ public class GlobalExceptionHandler {
 
         return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    @ResponseBody
+    public ResponseEntity<Map<String, List<String>>> handleJsonProcessingException(JsonProcessingException ex) {
+        Map<String, List<String>> res = new HashMap<>();
+        res.put("errors", Collections.singletonList(ex.getOriginalMessage()));
+
+        return new ResponseEntity<>(res, HttpStatus.BAD_REQUEST);
+    }
+
+    // The report of what was written before the malformed record, which names it among the errors
+    @ExceptionHandler(ImportAbortedException.class)
+    @ResponseBody
+    public ResponseEntity<ImportReport> handleImportAbortedException(ImportAbortedException ex) {
+        return new ResponseEntity<>(ex.getReport(), HttpStatus.BAD_REQUEST);
+    }
 }
@@ -0,0 +1,20 @@
+package aiss.gitminer.exception;
+
+import aiss.gitminer.service.ImportReport;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.BAD_REQUEST, reason ="The upload has a malformed record")
+public class ImportAbortedException extends Exception{
+
+    private final ImportReport report;
+
+    public ImportAbortedException(ImportReport report, Throwable cause) {
+        super(cause);
+        this.report = report;
+    }
+
+    public ImportReport getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,8 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.TOO_MANY_REQUESTS, reason ="Import queue is full, retry later")
+public class ImportQueueFullException extends Exception{
+}
@@ -0,0 +1,8 @@
+package aiss.gitminer.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(code= HttpStatus.PRECONDITION_FAILED, reason ="Modified since the given ETag, read it again")
+public class PreconditionFailedException extends Exception{
+}
@@ -1,33 +1,62 @@
 
 package aiss.gitminer.model;
 
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.SearchIndexListener;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Entity
-@Table(name = "Comment")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SearchIndexListener.class)
+@JsonFilter(CompressedText.FILTER)
+@Table(name = "Comment", indexes = {
+        @Index(name = "comment_created_at_idx", columnList = "createdAt, id"),
+        // Serves the comments of an issue in creation order
+        @Index(name = "comment_issue_created_at_idx", columnList = "issueId, createdAt, id"),
+        @Index(name = "comment_author_idx", columnList = "author_id, id"),
+        @Index(name = "comment_version_idx", columnList = "version")
+})
 public class Comment {
 
     @Id
     @JsonProperty("id")
     private String id;
-    @JsonProperty("body")
+    // Stored with CompressedText and only inflated when serialized
     @NotEmpty(message = "The message cannot be empty.")
-    @Column(columnDefinition="TEXT")
-    private String body;
+    @Column(columnDefinition="BLOB")
+    private byte[] body;
 
     @JsonProperty("author")
     @JoinColumn(name = "author_id", referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY)
     private User author;
 
     @JsonProperty("created_at")
-    @NotEmpty(message = "The field created_at cannot be empty.")
-    private String createdAt;
+    @NotNull(message = "The field created_at cannot be empty.")
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant createdAt;
     @JsonProperty("updated_at")
-    private String updatedAt;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant updatedAt;
+    // Written through Issue.comments, only mapped here to be filtered on
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private String issueId;
+    // Drawn from the entity_version sequence on every insert and update, see EntityVersionService
+    @JsonIgnore
+    @Column(columnDefinition = EntityVersionService.COLUMN_DEFINITION, insertable = false, updatable = false)
+    private Long version;
 
     public String getId() {
         return id;
@@ -37,12 +66,19 @@ public class Comment {
         this.id = id;
     }
 
+    @JsonProperty("body")
     public String getBody() {
-        return body;
+        return CompressedText.decompress(body);
     }
 
+    @JsonProperty("body")
     public void setBody(String body) {
-        this.body = body;
+        this.body = CompressedText.compress(body);
+    }
+
+    @JsonIgnore
+    public byte[] getCompressedBody() {
+        return body;
     }
 
     public User getAuthor() {
@@ -53,22 +89,26 @@ public class Comment {
         this.author = author;
     }
 
-    public String getCreatedAt() {
+    public Instant getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public Instant getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
 
+    public String getIssueId() {
+        return issueId;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -79,7 +119,7 @@ public class Comment {
         sb.append(',');
         sb.append("body");
         sb.append('=');
-        sb.append(((this.body == null) ? "<null>" : this.body));
+        sb.append(((this.body == null) ? "<null>" : getBody()));
         sb.append(',');
         sb.append("author");
         sb.append('=');
@@ -1,15 +1,35 @@
 package aiss.gitminer.model;
 
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.SearchIndexListener;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Entity
-@Table(name = "Commit")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SearchIndexListener.class)
+@JsonFilter(CompressedText.FILTER)
+@Table(name = "Commit", indexes = {
+        @Index(name = "commit_authored_date_idx", columnList = "authoredDate, id"),
+        @Index(name = "commit_author_name_idx", columnList = "authorName, id"),
+        @Index(name = "commit_version_idx", columnList = "version")
+})
 public class Commit {
 
     @Id
@@ -18,22 +38,27 @@ public class Commit {
     @JsonProperty("title")
     private String title;
 
-    @JsonProperty("message")
-    @Column(columnDefinition="TEXT")
-    private String message;
+    // Stored with CompressedText and only inflated when serialized
+    @Column(columnDefinition="BLOB")
+    private byte[] message;
     @JsonProperty("author_name")
     @NotEmpty(message = "Author name cannot be empty.")
     private String authorName;
     @JsonProperty("author_email")
     private String authorEmail;
     @JsonProperty("authored_date")
-    @NotEmpty(message = "Author date cannot be empty.")
-    private String authoredDate;
+    @NotNull(message = "Author date cannot be empty.")
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant authoredDate;
 
     @JsonProperty("web_url")
     @NotEmpty(message = "URL cannot be empty." +
             "")
     private String webUrl;
+    // Drawn from the entity_version sequence on every insert and update, see EntityVersionService
+    @JsonIgnore
+    @Column(columnDefinition = EntityVersionService.COLUMN_DEFINITION, insertable = false, updatable = false)
+    private Long version;
 
     public String getId() {
         return id;
@@ -51,12 +76,19 @@ public class Commit {
         this.title = title;
     }
 
+    @JsonProperty("message")
     public String getMessage() {
-        return message;
+        return CompressedText.decompress(message);
     }
 
+    @JsonProperty("message")
     public void setMessage(String message) {
-        this.message = message;
+        this.message = CompressedText.compress(message);
+    }
+
+    @JsonIgnore
+    public byte[] getCompressedMessage() {
+        return message;
     }
 
     public String getAuthorName() {
@@ -75,11 +107,11 @@ public class Commit {
         this.authorEmail = authorEmail;
     }
 
-    public String getAuthoredDate() {
+    public Instant getAuthoredDate() {
         return authoredDate;
     }
 
-    public void setAuthoredDate(String authoredDate) {
+    public void setAuthoredDate(Instant authoredDate) {
         this.authoredDate = authoredDate;
     }
 
@@ -105,9 +137,9 @@ public class Commit {
         sb.append(',');
         sb.append("message");
         sb.append('=');
-        sb.append(((this.message == null) ? "<null>" : this.message));
+        sb.append(((this.message == null) ? "<null>" : getMessage()));
         sb.append(',');
-        sb.append("authorName");
+        sb.append("authorName, id");
         sb.append('=');
         sb.append(((this.authorName == null) ? "<null>" : this.authorName));
         sb.append(',');
@@ -115,7 +147,7 @@ public class Commit {
         sb.append('=');
         sb.append(((this.authorEmail == null) ? "<null>" : this.authorEmail));
         sb.append(',');
-        sb.append("authoredDate");
+        sb.append("authoredDate, id");
         sb.append('=');
         sb.append(((this.authoredDate == null) ? "<null>" : this.authoredDate));
         sb.append(',');
@@ -0,0 +1,87 @@
+package aiss.gitminer.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoding of the large text columns. The first byte tells whether the rest is raw UTF-8 or deflated UTF-8,
+ * so short texts that would not shrink are stored as they are. The encoding is deterministic, which lets
+ * stored and incoming values be compared as bytes. The columns are BLOBs, since H2 caps VARBINARY at 1 MB.
+ */
+public final class CompressedText {
+
+    // Jackson filter of the entities holding compressed text, see LargeTextResponseAdvice
+    public static final String FILTER = "compressedText";
+    public static final Set<String> PROPERTIES = Set.of("message", "description", "body");
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final int MIN_DEFLATE_LENGTH = 64;
+
+    private CompressedText() {
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= MIN_DEFLATE_LENGTH) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(utf8);
+                deflater.finish();
+                byte[] out = new byte[utf8.length];
+                out[0] = DEFLATED;
+                int length = 1 + deflater.deflate(out, 1, out.length - 1);
+                if (deflater.finished()) {
+                    return Arrays.copyOf(out, length);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] out = new byte[utf8.length + 1];
+        out[0] = RAW;
+        System.arraycopy(utf8, 0, out, 1, utf8.length);
+        return out;
+    }
+
+    public static String decompress(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            return "";
+        }
+        if (data[0] == RAW) {
+            return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,13 +1,31 @@
 
 package aiss.gitminer.model;
 
+import aiss.gitminer.service.EntityVersionService;
+import aiss.gitminer.service.SearchIndexListener;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.List;
 
 @Entity
-@Table(name = "Issue")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(SearchIndexListener.class)
+@JsonFilter(CompressedText.FILTER)
+@Table(name = "Issue", indexes = {
+        @Index(name = "issue_created_at_idx", columnList = "createdAt, id"),
+        // Serves the state filter alone and the state and author filters together
+        @Index(name = "issue_state_author_idx", columnList = "state, author_id, id"),
+        @Index(name = "issue_author_idx", columnList = "author_id, id"),
+        @Index(name = "issue_version_idx", columnList = "version")
+})
 public class Issue {
 
     @Id
@@ -15,35 +33,44 @@ public class Issue {
     private String id;
     @JsonProperty("title")
     private String title;
-    @JsonProperty("description")
-    @Column(columnDefinition="TEXT")
-    private String description;
+    // Stored with CompressedText and only inflated when serialized
+    @Column(columnDefinition="BLOB")
+    private byte[] description;
     @JsonProperty("state")
     private String state;
 
     @JsonProperty("created_at")
-    private String createdAt;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant createdAt;
     @JsonProperty("updated_at")
-    private String updatedAt;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant updatedAt;
     @JsonProperty("closed_at")
-    private String closedAt;
+    @JsonDeserialize(using = LenientInstantDeserializer.class)
+    private Instant closedAt;
     @JsonProperty("labels")
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<String> labels;
     @JsonProperty("author")
     @JoinColumn(name = "author_id",referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY)
     private User author;
     @JsonProperty("assignee")
     @JoinColumn(name = "assignee_id",referencedColumnName = "id")
-    @OneToOne(cascade=CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY)
     private User assignee;
     @JsonProperty("votes")
     private Integer votes;
     @JsonProperty("comments")
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "issueId")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Comment> comments;
+    // Drawn from the entity_version sequence on every insert and update, see EntityVersionService
+    @JsonIgnore
+    @Column(columnDefinition = EntityVersionService.COLUMN_DEFINITION, insertable = false, updatable = false)
+    private Long version;
 
     public String getId() {
         return id;
@@ -61,12 +88,19 @@ public class Issue {
         this.title = title;
     }
 
+    @JsonProperty("description")
     public String getDescription() {
-        return description;
+        return CompressedText.decompress(description);
     }
 
+    @JsonProperty("description")
     public void setDescription(String description) {
-        this.description = description;
+        this.description = CompressedText.compress(description);
+    }
+
+    @JsonIgnore
+    public byte[] getCompressedDescription() {
+        return description;
     }
 
     public String getState() {
@@ -77,27 +111,27 @@ public class Issue {
         this.state = state;
     }
 
-    public String getCreatedAt() {
+    public Instant getCreatedAt() {
         return createdAt;
     }
 
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
     }
 
-    public String getUpdatedAt() {
+    public Instant getUpdatedAt() {
         return updatedAt;
     }
 
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
 
-    public String getClosedAt() {
+    public Instant getClosedAt() {
         return closedAt;
     }
 
-    public void setClosedAt(String closedAt) {
+    public void setClosedAt(Instant closedAt) {
         this.closedAt = closedAt;
     }
 
@@ -155,7 +189,7 @@ public class Issue {
         sb.append(',');
         sb.append("description");
         sb.append('=');
-        sb.append(((this.description == null) ? "<null>" : this.description));
+        sb.append(((this.description == null) ? "<null>" : getDescription()));
         sb.append(',');
         sb.append("state");
         sb.append('=');
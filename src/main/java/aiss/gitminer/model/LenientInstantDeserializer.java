@@ -0,0 +1,50 @@
+package aiss.gitminer.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads the timestamps sent by the miners, which are ISO-8601 date-times with an offset
+ * ({@code 2023-01-05T10:21:33.000+01:00}, {@code 2023-01-05T09:21:33Z}). Date-times without an offset
+ * and plain dates are also accepted and taken as UTC.
+ */
+public class LenientInstantDeserializer extends StdScalarDeserializer<Instant> {
+
+    public LenientInstantDeserializer() {
+        super(Instant.class);
+    }
+
+    @Override
+    public Instant deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        String text = parser.getValueAsString();
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return parse(text);
+        } catch (DateTimeParseException e) {
+            return (Instant) context.handleWeirdStringValue(Instant.class, text, "not an ISO-8601 date-time");
+        }
+    }
+
+    public static Instant parse(String text) {
+        String value = text.trim();
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            if (value.length() > 10) {
+                return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC);
+            }
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 
 package aiss.gitminer.model;
 
+import aiss.gitminer.service.EntityVersionService;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -10,7 +14,12 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "Project")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "Project", indexes = {
+        @Index(name = "project_name_idx", columnList = "name, id"),
+        @Index(name = "project_version_idx", columnList = "version")
+})
 public class Project {
 
     @Id
@@ -27,12 +36,18 @@ public class Project {
     @JsonProperty("commits")
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "projectId")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Commit> commits;
 
     @JsonProperty("issues")
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "projectId")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private List<Issue> issues;
+    // Drawn from the entity_version sequence on every insert and update, see EntityVersionService
+    @JsonIgnore
+    @Column(columnDefinition = EntityVersionService.COLUMN_DEFINITION, insertable = false, updatable = false)
+    private Long version;
 
     public Project() {
         commits = new ArrayList<>();
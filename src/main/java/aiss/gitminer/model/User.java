@@ -1,15 +1,26 @@
 
 package aiss.gitminer.model;
 
+import aiss.gitminer.service.EntityVersionService;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotEmpty;
 
 @Entity
-@Table(name = "GMUser")     // Watch out: User is a reserved keyword in H2
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "GMUser", indexes = @Index(name = "user_version_idx", columnList = "version"))     // Watch out: User is a reserved keyword in H2
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})     // Users are shared lazy references
 public class User {
 
     @Id
@@ -24,6 +35,10 @@ public class User {
     private String avatarUrl;
     @JsonProperty("web_url")
     private String webUrl;
+    // Drawn from the entity_version sequence on every insert and update, see EntityVersionService
+    @JsonIgnore
+    @Column(columnDefinition = EntityVersionService.COLUMN_DEFINITION, insertable = false, updatable = false)
+    private Long version;
 
     public String getId() {
         return id;
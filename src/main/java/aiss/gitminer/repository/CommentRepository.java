@@ -3,18 +3,31 @@ package aiss.gitminer.repository;
 import aiss.gitminer.model.Comment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Repository
-public interface CommentRepository extends JpaRepository<Comment, Long> {
+public interface CommentRepository extends JpaRepository<Comment, String> {
     Optional<Comment> findById(String id);
 
     boolean existsById(String id);
 
+    @Transactional
     void deleteById(String id);
 
+    @Query(value = "SELECT issue_id FROM Comment WHERE id = :id", nativeQuery = true)
+    String findIssueId(@Param("id") String id);
+
+    @Override
+    @EntityGraph(attributePaths = {"author"})
+    Page<Comment> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"author"})
     Page<Comment> findCommentByAuthor_Id(String authorId, Pageable pageable);
 }
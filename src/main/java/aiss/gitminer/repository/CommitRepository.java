@@ -4,18 +4,25 @@ import aiss.gitminer.model.Commit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.validation.constraints.NotEmpty;
 import java.util.Optional;
 
 @Repository
-public interface CommitRepository extends JpaRepository<Commit, Long> {
+public interface CommitRepository extends JpaRepository<Commit, String> {
     Optional<Commit> findById(String id);
 
     boolean existsById(String id);
 
+    @Transactional
     void deleteById(String id);
 
+    @Query(value = "SELECT project_id FROM Commit WHERE id = :id", nativeQuery = true)
+    String findProjectId(@Param("id") String id);
+
     Page<Commit> findCommitByAuthorName(@NotEmpty(message = "Author name cannot be empty.") String authorName, Pageable pageable);
 }
@@ -0,0 +1,147 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.InvalidCursorException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+
+import java.beans.PropertyDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position after the last row of a page: the sort order, and the sort key and id of that row.
+ * Clients only see it as an opaque URL-safe string.
+ */
+public class Cursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final char SEPARATOR = '\n';
+
+    private final Sort.Order order;
+    // Of the type of the sort attribute once decoded for an entity
+    private final Object key;
+    private final String id;
+
+    public Cursor(Sort.Order order, Object key, String id) {
+        this.order = order;
+        this.key = key;
+        this.id = id;
+    }
+
+    // Cursor of the page after the slice, or null if it is the last one
+    public static String next(Slice<?> slice, Sort.Order order) {
+        if (!slice.hasNext()) {
+            return null;
+        }
+        return after(slice.getContent().get(slice.getNumberOfElements() - 1), order).encode();
+    }
+
+    // Response with the content of a page, and the cursor of the next one in a header if there is one
+    public static ResponseEntity<List<?>> response(List<?> content, String next) {
+        if (next == null) {
+            return ResponseEntity.ok(content);
+        }
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, next).body(content);
+    }
+
+    public static ResponseEntity<List<?>> response(Slice<?> slice, Sort.Order order) {
+        return response(slice.getContent(), next(slice, order));
+    }
+
+    /**
+     * Reads a "cursor" request parameter, which is empty for the first page, for a keyset of the given entity
+     * type. A cursor of another order, or whose key is not a value of the sort attribute, is invalid.
+     */
+    public static Cursor decode(String value, Class<?> type, Sort.Order order) throws InvalidCursorException {
+        if (value.isEmpty()) {
+            return null;
+        }
+        Cursor cursor = decode(value);
+        if (!cursor.order.equals(order)) {
+            throw new InvalidCursorException();
+        }
+        if (cursor.key == null) {
+            return cursor;
+        }
+        try {
+            return new Cursor(order, parse((String) cursor.key, propertyType(type, order.getProperty())), cursor.id);
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    // Cursor pointing after the given entity, or null for an empty page
+    public static Cursor after(Object entity, Sort.Order order) {
+        if (entity == null) {
+            return null;
+        }
+        // A nested key is null, like the keyset predicate reads it, when a link of its path is
+        Object key = entity;
+        for (String property : order.getProperty().split("\\.")) {
+            key = key == null ? null : new BeanWrapperImpl(key).getPropertyValue(property);
+        }
+        return new Cursor(order, key, String.valueOf(new BeanWrapperImpl(entity).getPropertyValue("id")));
+    }
+
+    private static Cursor decode(String value) throws InvalidCursorException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8)
+                    .split(String.valueOf(SEPARATOR), -1);
+            if (parts.length != 4) {
+                throw new InvalidCursorException();
+            }
+            Sort.Order order = new Sort.Order(Sort.Direction.fromString(parts[0]), parts[1]);
+            return new Cursor(order, parts[2].isEmpty() ? null : parts[2].substring(1), parts[3]);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    private static Object parse(String value, Class<?> type) {
+        if (type == Integer.class || type == int.class) {
+            return Integer.valueOf(value);
+        } else if (type == Long.class || type == long.class) {
+            return Long.valueOf(value);
+        } else if (type == Instant.class) {
+            return Instant.parse(value);
+        }
+        return value;
+    }
+
+    // Type of a possibly dotted attribute, e.g. "author.id"
+    private static Class<?> propertyType(Class<?> type, String attribute) {
+        for (String part : attribute.split("\\.")) {
+            PropertyDescriptor property = BeanUtils.getPropertyDescriptor(type, part);
+            if (property == null) {
+                throw new IllegalArgumentException("No property " + attribute + " in " + type.getSimpleName());
+            }
+            type = property.getPropertyType();
+        }
+        return type;
+    }
+
+    public String encode() {
+        // The key is prefixed so that an empty key can be told apart from a null one
+        String value = String.join(String.valueOf(SEPARATOR), order.getDirection().name(), order.getProperty(),
+                key == null ? "" : "=" + key, id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Sort.Order getOrder() {
+        return order;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
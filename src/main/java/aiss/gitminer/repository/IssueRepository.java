@@ -3,23 +3,61 @@ package aiss.gitminer.repository;
 import aiss.gitminer.model.Issue;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
 @Repository
-public interface IssueRepository extends JpaRepository<Issue, Long> {
+public interface IssueRepository extends JpaRepository<Issue, String> {
     Optional<Issue> findById(String id);
 
     boolean existsById(String id);
 
+    @Transactional
     void deleteById(String id);
 
+    @Query(value = "SELECT project_id FROM Issue WHERE id = :id", nativeQuery = true)
+    String findProjectId(@Param("id") String id);
+
+    // Single conditional updates that do not load the issue, which the caller evicts by id (see
+    // ProjectRepository.EVICTED_BY_ID). No row updated means no issue, or for a close one already closed.
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = ProjectRepository.EVICTED_BY_ID))
+    @Query(value = "UPDATE Issue SET votes = COALESCE(votes, 0) + 1, updated_at = :now WHERE id = :id",
+            nativeQuery = true)
+    int incrementVotes(@Param("id") String id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = ProjectRepository.EVICTED_BY_ID))
+    @Query(value = "UPDATE Issue SET state = 'closed', closed_at = :now, updated_at = :now "
+            + "WHERE id = :id AND (state IS NULL OR state <> 'closed')", nativeQuery = true)
+    int close(@Param("id") String id, @Param("now") Instant now);
+
+    // Users are joined into the page query; labels and comments are loaded in batches (default_batch_fetch_size)
+    @Override
+    @EntityGraph(attributePaths = {"author", "assignee"})
+    Page<Issue> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"author", "assignee"})
     Page<Issue> findIssueByStateAndAuthor_Id(String state, String authorId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"author", "assignee"})
     Page<Issue> findIssueByAuthor_Id(String authorId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"author", "assignee"})
     Page<Issue> findIssueByState(String state, Pageable pageable);
 }
@@ -0,0 +1,160 @@
+package aiss.gitminer.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset pagination: instead of skipping {@code page * size} rows, each page starts strictly after the
+ * (sort key, id) of the previous page's last row, so every page costs the same whatever its depth.
+ * Slices read one extra row to know whether there is a next page, and never run a COUNT query.
+ */
+@Repository
+public class KeysetRepository {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * Reads the slice of entities matching the filters (keyed by attribute path, e.g. "author.id", with an
+     * equality value or a {@link Range}) in the given order, after the cursor or from the start if it is null.
+     */
+    public <T> Slice<T> findSlice(Class<T> type, Map<String, Object> filters, Sort.Order order, Cursor after,
+                                  int size) {
+        return find(type, filters, Sort.by(order), after, 0, size);
+    }
+
+    /**
+     * Reads the page of entities matching the filters, {@code page * size} rows into the given sort, for the
+     * filters the derived queries of the repositories do not cover.
+     */
+    public <T> Slice<T> findPage(Class<T> type, Map<String, Object> filters, Sort sort, int page, int size) {
+        return find(type, filters, sort, null, page * size, size);
+    }
+
+    // A cursor always comes with a single-key sort, see Ordering.parseKey
+    private <T> Slice<T> find(Class<T> type, Map<String, Object> filters, Sort sort, Cursor after, int offset,
+                              int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+
+        List<Predicate> predicates = where(cb, root, filters);
+        if (after != null) {
+            Sort.Order order = sort.iterator().next();
+            predicates.add(after(cb, path(root, order.getProperty()), path(root, "id"), after,
+                    order.isAscending()));
+        }
+
+        query.where(predicates.toArray(new Predicate[0]));
+        query.orderBy(orderBy(cb, sort, root, filters));
+
+        List<T> rows = entityManager.createQuery(query)
+                .setHint("javax.persistence.loadgraph", toOneGraph(entityManager, type))
+                .setFirstResult(offset)
+                .setMaxResults(size + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > size;
+        if (hasNext) {
+            rows = rows.subList(0, size);
+        }
+        return new SliceImpl<>(rows, PageRequest.of(offset / size, size, sort), hasNext);
+    }
+
+    // Joins the many-to-one associations into the page query, as the entity graphs of the derived queries do
+    static <T> EntityGraph<T> toOneGraph(EntityManager entityManager, Class<T> type) {
+        EntityGraph<T> graph = entityManager.createEntityGraph(type);
+        for (SingularAttribute<? super T, ?> attribute : entityManager.getMetamodel().entity(type)
+                .getSingularAttributes()) {
+            if (attribute.isAssociation()) {
+                graph.addAttributeNodes(attribute.getName());
+            }
+        }
+        return graph;
+    }
+
+    // Equality or range predicates of the filters, skipping the absent ones
+    static List<Predicate> where(CriteriaBuilder cb, Root<?> root, Map<String, Object> filters) {
+        List<Predicate> predicates = new ArrayList<>();
+        filters.forEach((attribute, value) -> {
+            if (value instanceof Range) {
+                predicates.add(((Range) value).toPredicate(cb, path(root, attribute)));
+            } else if (value != null) {
+                predicates.add(cb.equal(path(root, attribute), value));
+            }
+        });
+        return predicates;
+    }
+
+    // Sort keys then id, which breaks ties between equal keys. Attributes filtered on a single value come first:
+    // they do not change the order, but let H2 read a (filter, key, id) index in order instead of sorting.
+    static List<Order> orderBy(CriteriaBuilder cb, Sort sort, Root<?> root, Map<String, Object> filters) {
+        List<Order> orders = new ArrayList<>();
+        filters.forEach((attribute, value) -> {
+            if (value != null && !(value instanceof Range) && sort.getOrderFor(attribute) == null) {
+                orders.add(cb.asc(path(root, attribute)));
+            }
+        });
+        boolean ascending = true;
+        for (Sort.Order order : sort) {
+            Path<?> key = path(root, order.getProperty());
+            orders.add(order.isAscending() ? cb.asc(key) : cb.desc(key));
+            ascending = order.isAscending();
+        }
+        if (sort.getOrderFor("id") == null) {
+            orders.add(ascending ? cb.asc(root.get("id")) : cb.desc(root.get("id")));
+        }
+        return orders;
+    }
+
+    // H2 sorts NULL first in ascending order and last in descending order. Ascending pages also get a
+    // "key >= last key" bound, which H2 can read as an index range where it cannot read the disjunction.
+    static Predicate after(CriteriaBuilder cb, Path<Comparable<Object>> key, Path<Comparable<Object>> id,
+                                   Cursor cursor, boolean ascending) {
+        Comparable<Object> lastId = comparable(cursor.getId());
+        Predicate sameKeyNextId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+        if (cursor.getKey() == null) {
+            Predicate nullKey = cb.and(cb.isNull(key), sameKeyNextId);
+            return ascending ? cb.or(nullKey, cb.isNotNull(key)) : nullKey;
+        }
+        // Decoded to the type of the sort attribute, see Cursor.decode
+        Comparable<Object> lastKey = comparable(cursor.getKey());
+        Predicate nextKey = ascending ? cb.greaterThan(key, lastKey) : cb.lessThan(key, lastKey);
+        Predicate sameKey = cb.and(cb.equal(key, lastKey), sameKeyNextId);
+        if (ascending) {
+            return cb.and(cb.greaterThanOrEqualTo(key, lastKey), cb.or(nextKey, sameKey));
+        }
+        return cb.or(nextKey, sameKey, cb.isNull(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable<Object>) value;
+    }
+
+    static <X> Path<X> path(Root<?> root, String attribute) {
+        Path<?> path = root;
+        for (String part : attribute.split("\\.")) {
+            path = path.get(part);
+        }
+        @SuppressWarnings("unchecked")
+        Path<X> typed = (Path<X>) path;
+        return typed;
+    }
+}
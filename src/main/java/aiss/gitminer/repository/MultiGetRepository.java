@@ -0,0 +1,63 @@
+package aiss.gitminer.repository;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Multi-get: resolves a list of ids with one {@code IN} query per chunk of ids instead of one lookup per id.
+ */
+@Repository
+public class MultiGetRepository {
+
+    private static final int IN_CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * Reads the entities with the given ids, many-to-one associations joined, and returns them in the order
+     * of the ids with the missing ids. Repeated ids are resolved once.
+     */
+    public <T> MultiGetResult<T> findAllById(Class<T> type, Collection<String> ids, Function<T, String> idOf) {
+        Set<String> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        List<String> distinct = new ArrayList<>(unique);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        Map<String, T> found = new HashMap<>();
+        for (int i = 0; i < distinct.size(); i += IN_CHUNK_SIZE) {
+            CriteriaQuery<T> query = cb.createQuery(type);
+            Root<T> root = query.from(type);
+            query.where(root.get("id").in(distinct.subList(i, Math.min(i + IN_CHUNK_SIZE, distinct.size()))));
+            for (T entity : entityManager.createQuery(query)
+                    .setHint("javax.persistence.loadgraph", KeysetRepository.toOneGraph(entityManager, type))
+                    .getResultList()) {
+                found.put(idOf.apply(entity), entity);
+            }
+        }
+
+        List<T> items = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : distinct) {
+            T entity = found.get(id);
+            if (entity == null) {
+                missing.add(id);
+            } else {
+                items.add(entity);
+            }
+        }
+        return new MultiGetResult<>(items, missing);
+    }
+}
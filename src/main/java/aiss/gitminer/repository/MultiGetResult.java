@@ -0,0 +1,29 @@
+package aiss.gitminer.repository;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Entities found for a list of ids, in the order of the ids, and the ids that were not found.
+ */
+public class MultiGetResult<T> {
+
+    @JsonProperty("items")
+    private final List<T> items;
+    @JsonProperty("missing")
+    private final List<String> missing;
+
+    MultiGetResult(List<T> items, List<String> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+}
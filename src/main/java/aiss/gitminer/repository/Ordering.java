@@ -0,0 +1,57 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.InvalidOrderException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the {@code order} request parameter: comma-separated attributes, each with a "-" prefix for
+ * descending order, e.g. {@code author.id,-createdAt}. Only attributes with a (key, id) index on their table
+ * (see the {@code @Table} indexes of the entities) can be sorted on, so a page is read in index order
+ * instead of sorting a full scan.
+ */
+public final class Ordering {
+
+    private static final Map<Class<?>, Set<String>> INDEXED = Map.of(
+            Project.class, Set.of("id", "name"),
+            Commit.class, Set.of("id", "authoredDate", "authorName"),
+            Issue.class, Set.of("id", "createdAt", "author.id"),
+            Comment.class, Set.of("id", "createdAt", "author.id"));
+
+    private Ordering() {
+    }
+
+    // Sort of an "order" parameter, unsorted if it is absent
+    public static Sort parse(Class<?> type, String order) throws InvalidOrderException {
+        if (order == null) {
+            return Sort.unsorted();
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String key : order.split(",")) {
+            boolean descending = key.trim().startsWith("-");
+            String property = key.trim().substring(descending ? 1 : 0);
+            if (!INDEXED.get(type).contains(property) || Sort.by(orders).getOrderFor(property) != null) {
+                throw new InvalidOrderException();
+            }
+            orders.add(descending ? Sort.Order.desc(property) : Sort.Order.asc(property));
+        }
+        return Sort.by(orders);
+    }
+
+    // Single sort key of a keyset request, by id if the parameter is absent
+    public static Sort.Order parseKey(Class<?> type, String order) throws InvalidOrderException {
+        List<Sort.Order> orders = parse(type, order).toList();
+        if (orders.size() > 1) {
+            throw new InvalidOrderException();
+        }
+        return orders.isEmpty() ? Sort.Order.asc("id") : orders.get(0);
+    }
+}
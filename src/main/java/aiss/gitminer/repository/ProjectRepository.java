@@ -4,17 +4,98 @@ import aiss.gitminer.model.Project;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
 @Repository
-public interface ProjectRepository extends JpaRepository<Project, Long> {
+public interface ProjectRepository extends JpaRepository<Project, String> {
     Optional<Project> findById(String id);
 
     boolean existsById(String id);
 
+    @Transactional
     void deleteById(String id);
 
     Page<Project> findByName(String name, Pageable pageable);
+
+    // Latest authored/updated date among the commits, issues and comments of a project
+    @Query(value = "SELECT MAX(w) FROM (" +
+            "SELECT MAX(authored_date) w FROM Commit WHERE project_id = :projectId " +
+            "UNION ALL SELECT MAX(COALESCE(updated_at, created_at)) FROM Issue WHERE project_id = :projectId " +
+            "UNION ALL SELECT MAX(COALESCE(c.updated_at, c.created_at)) FROM Comment c " +
+            "JOIN Issue i ON c.issue_id = i.id WHERE i.project_id = :projectId)", nativeQuery = true)
+    Timestamp findWatermark(@Param("projectId") String projectId);
+
+    // Statistics of a project, aggregated by the database. Rows are {group, count} unless stated otherwise.
+    @Query(value = "SELECT author_name, COUNT(*) n FROM Commit WHERE project_id = :projectId " +
+            "GROUP BY author_name ORDER BY n DESC, author_name", nativeQuery = true)
+    List<Object[]> countCommitsByAuthor(@Param("projectId") String projectId);
+
+    @Query(value = "SELECT state, COUNT(*) n FROM Issue WHERE project_id = :projectId " +
+            "GROUP BY state ORDER BY n DESC, state", nativeQuery = true)
+    List<Object[]> countIssuesByState(@Param("projectId") String projectId);
+
+    // {closed issues, mean seconds from creation to close}
+    @Query(value = "SELECT COUNT(*), AVG(DATEDIFF(SECOND, created_at, closed_at)) " +
+            "FROM Issue WHERE project_id = :projectId AND closed_at IS NOT NULL AND created_at IS NOT NULL",
+            nativeQuery = true)
+    List<Object[]> findTimeToClose(@Param("projectId") String projectId);
+
+    // {issues, comments, most comments on an issue}
+    @Query(value = "SELECT COUNT(*), COALESCE(SUM(n), 0), COALESCE(MAX(n), 0) FROM (" +
+            "SELECT COUNT(c.id) n FROM Issue i LEFT JOIN Comment c ON c.issue_id = i.id " +
+            "WHERE i.project_id = :projectId GROUP BY i.id)", nativeQuery = true)
+    List<Object[]> countCommentsPerIssue(@Param("projectId") String projectId);
+
+    // Set-based delete of a project graph, children first. Users are shared between projects and are kept.
+    // Their cached entries are evicted by id (EntityCacheService.evictProject), and a query space no entity
+    // maps to keeps Hibernate from dropping every cache region after each statement.
+    String EVICTED_BY_ID = "evicted_by_id";
+
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = EVICTED_BY_ID))
+    @Query(value = "DELETE FROM Issue_labels WHERE issue_id IN (SELECT id FROM Issue WHERE project_id = :projectId)",
+            nativeQuery = true)
+    int deleteIssueLabels(@Param("projectId") String projectId);
+
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = EVICTED_BY_ID))
+    @Query(value = "DELETE FROM Comment WHERE issue_id IN (SELECT id FROM Issue WHERE project_id = :projectId)",
+            nativeQuery = true)
+    int deleteComments(@Param("projectId") String projectId);
+
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = EVICTED_BY_ID))
+    @Query(value = "DELETE FROM Issue WHERE project_id = :projectId", nativeQuery = true)
+    int deleteIssues(@Param("projectId") String projectId);
+
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = EVICTED_BY_ID))
+    @Query(value = "DELETE FROM Commit WHERE project_id = :projectId", nativeQuery = true)
+    int deleteCommits(@Param("projectId") String projectId);
+
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = EVICTED_BY_ID))
+    @Query(value = "DELETE FROM Project WHERE id = :projectId", nativeQuery = true)
+    int deleteProject(@Param("projectId") String projectId);
+
+    @Transactional
+    default boolean deleteGraph(String projectId) {
+        deleteIssueLabels(projectId);
+        deleteComments(projectId);
+        deleteIssues(projectId);
+        deleteCommits(projectId);
+        return deleteProject(projectId) > 0;
+    }
 }
@@ -0,0 +1,31 @@
+package aiss.gitminer.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slice of projected rows, each one holding only the requested fields keyed by their JSON names.
+ */
+public class ProjectedSlice extends SliceImpl<Map<String, Object>> {
+
+    private final List<String> ids;
+    private final String nextCursor;
+
+    ProjectedSlice(List<Map<String, Object>> rows, List<String> ids, int size, boolean hasNext, String nextCursor) {
+        super(rows, PageRequest.ofSize(Math.max(size, 1)), hasNext);
+        this.ids = ids;
+        this.nextCursor = nextCursor;
+    }
+
+    // Ids of the rows, whether or not the id field was requested
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,337 @@
+package aiss.gitminer.repository;
+
+import aiss.gitminer.exception.InvalidFieldException;
+import aiss.gitminer.model.CompressedText;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sparse fieldsets: reads only the fields named in a {@code fields} parameter (JSON names, nested ones
+ * dotted, e.g. {@code id,name,issues.title,issues.author.username}) with tuple queries instead of loading
+ * entities. Scalar and many-to-one fields are selected in a single query, and each requested collection is
+ * read with one more query per level for all the rows at once. Collections that are not requested are
+ * never touched.
+ */
+@Repository
+public class ProjectionRepository {
+
+    private static final int IN_CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final Map<Class<?>, Map<String, Property>> properties = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the page of matching rows, {@code page * size} rows into the given sort. Pages have no next cursor.
+     */
+    public ProjectedSlice findPage(Class<?> type, String fields, Map<String, Object> filters, Sort sort,
+                                   int page, int size) throws InvalidFieldException {
+        return find(type, parse(type, fields), filters, sort, false, null, page * size, size);
+    }
+
+    /**
+     * Reads the slice of matching rows after the cursor, or from the start if it is null.
+     */
+    public ProjectedSlice findSlice(Class<?> type, String fields, Map<String, Object> filters, Sort.Order order,
+                                    Cursor after, int size) throws InvalidFieldException {
+        return find(type, parse(type, fields), filters, Sort.by(order), true, after, 0, size);
+    }
+
+    public Optional<Map<String, Object>> findById(Class<?> type, String fields, String id)
+            throws InvalidFieldException {
+        ProjectedSlice slice = find(type, parse(type, fields), Collections.singletonMap("id", id), Sort.unsorted(),
+                false, null, 0, 1);
+        return slice.getContent().stream().findFirst();
+    }
+
+    // Keyset slices come with a single-key sort and the cursor of the next slice
+    private ProjectedSlice find(Class<?> type, Fields fields, Map<String, Object> filters, Sort sort,
+                                boolean keyset, Cursor after, int offset, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(type);
+
+        List<Predicate> predicates = KeysetRepository.where(cb, root, filters);
+        Sort.Order order = sort.isSorted() ? sort.iterator().next() : Sort.Order.asc("id");
+        Path<Comparable<Object>> key = KeysetRepository.path(root, order.getProperty());
+        Path<Comparable<Object>> id = KeysetRepository.path(root, "id");
+        if (after != null) {
+            predicates.add(KeysetRepository.after(cb, key, id, after, order.isAscending()));
+        }
+
+        // The sort key comes first so the cursor of the next page can be built from the last row
+        List<Selection<?>> columns = new ArrayList<>();
+        columns.add(key);
+        select(fields, root, columns);
+        query.multiselect(columns).where(predicates.toArray(new Predicate[0]));
+        query.orderBy(KeysetRepository.orderBy(cb, sort, root, filters));
+
+        List<Tuple> tuples = entityManager.createQuery(query).setFirstResult(offset).setMaxResults(size + 1)
+                .getResultList();
+        boolean hasNext = tuples.size() > size;
+        if (hasNext) {
+            tuples = tuples.subList(0, size);
+        }
+
+        Map<String, Map<String, Object>> rows = new LinkedHashMap<>();
+        for (Tuple tuple : tuples) {
+            int[] index = {1};
+            rows.put((String) tuple.get(1), read(fields, tuple, index));
+        }
+        fill(fields, rows);
+
+        String next = null;
+        if (hasNext && keyset) {
+            Object lastKey = tuples.get(tuples.size() - 1).get(0);
+            String lastId = (String) tuples.get(tuples.size() - 1).get(1);
+            next = new Cursor(order, lastKey, lastId).encode();
+        }
+        return new ProjectedSlice(new ArrayList<>(rows.values()), new ArrayList<>(rows.keySet()), size, hasNext,
+                next);
+    }
+
+    // Adds the id, then the scalar and many-to-one columns of the fields to the select list
+    private static void select(Fields fields, From<?, ?> from, List<Selection<?>> columns) {
+        columns.add(from.get("id"));
+        for (Field field : fields.fields.values()) {
+            switch (field.property.kind) {
+                case SCALAR:
+                case COMPRESSED:
+                    columns.add(from.get(field.property.attribute));
+                    break;
+                case TO_ONE:
+                    select(field.fields, from.join(field.property.attribute, JoinType.LEFT), columns);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Reads the columns added by select(), returning null for a many-to-one field without a target
+    private static Map<String, Object> read(Fields fields, Tuple tuple, int[] index) {
+        Object id = tuple.get(index[0]++);
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Field field : fields.fields.values()) {
+            switch (field.property.kind) {
+                case SCALAR:
+                    row.put(field.name, tuple.get(index[0]++));
+                    break;
+                case COMPRESSED:
+                    row.put(field.name, CompressedText.decompress((byte[]) tuple.get(index[0]++)));
+                    break;
+                case TO_ONE:
+                    row.put(field.name, read(field.fields, tuple, index));
+                    break;
+                default:
+                    row.put(field.name, new ArrayList<>());
+                    break;
+            }
+        }
+        return id == null ? null : row;
+    }
+
+    // Reads the requested collections of the rows, keyed by id, and adds them to the rows
+    @SuppressWarnings("unchecked")
+    private void fill(Fields fields, Map<String, Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        for (Field field : fields.fields.values()) {
+            Property property = field.property;
+            if (property.kind != Kind.COLLECTION && property.kind != Kind.ELEMENTS) {
+                continue;
+            }
+            Map<String, Map<String, Object>> children = new LinkedHashMap<>();
+            for (List<String> chunk : chunks(new ArrayList<>(rows.keySet()))) {
+                CriteriaQuery<Tuple> query = cb.createTupleQuery();
+                Root<?> parent = query.from(fields.type);
+                List<Selection<?>> columns = new ArrayList<>();
+                columns.add(parent.get("id"));
+                if (property.kind == Kind.COLLECTION) {
+                    From<?, ?> child = parent.join(property.attribute);
+                    select(field.fields, child, columns);
+                    query.orderBy(cb.asc(child.get("id")));
+                } else {
+                    columns.add(parent.join(property.attribute));
+                }
+                query.multiselect(columns).where(parent.get("id").in(chunk));
+
+                TypedQuery<Tuple> typed = entityManager.createQuery(query);
+                for (Tuple tuple : typed.getResultList()) {
+                    List<Object> values = (List<Object>) rows.get((String) tuple.get(0)).get(field.name);
+                    if (property.kind == Kind.COLLECTION) {
+                        int[] index = {1};
+                        Map<String, Object> child = read(field.fields, tuple, index);
+                        values.add(child);
+                        children.put((String) tuple.get(1), child);
+                    } else {
+                        values.add(tuple.get(1));
+                    }
+                }
+            }
+            if (property.kind == Kind.COLLECTION) {
+                fill(field.fields, children);
+            }
+        }
+    }
+
+    private Fields parse(Class<?> type, String fields) throws InvalidFieldException {
+        Fields parsed = new Fields(type);
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                parsed.add(field.trim().split("\\."), 0);
+            }
+        }
+        if (parsed.fields.isEmpty()) {
+            parsed.addScalars();
+        }
+        return parsed;
+    }
+
+    // Serialized properties of an entity keyed by JSON name, with the JPA attribute behind each one
+    private Map<String, Property> properties(Class<?> type) {
+        return properties.computeIfAbsent(type, t -> {
+            BeanDescription description = objectMapper.getSerializationConfig()
+                    .introspect(objectMapper.constructType(t));
+            EntityType<?> entity = entityManager.getMetamodel().entity(t);
+            Map<String, Property> byName = new LinkedHashMap<>();
+            for (BeanPropertyDefinition definition : description.findProperties()) {
+                if (!definition.couldSerialize()) {
+                    continue;
+                }
+                Attribute<?, ?> attribute = entity.getAttribute(definition.getInternalName());
+                byName.put(definition.getName(), new Property(attribute));
+            }
+            return byName;
+        });
+    }
+
+    private static List<List<String>> chunks(List<String> ids) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += IN_CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(i + IN_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    private enum Kind {
+        SCALAR, COMPRESSED, TO_ONE, COLLECTION, ELEMENTS
+    }
+
+    private static final class Property {
+
+        final String attribute;
+        final Kind kind;
+        final Class<?> target;
+
+        Property(Attribute<?, ?> attribute) {
+            this.attribute = attribute.getName();
+            switch (attribute.getPersistentAttributeType()) {
+                case MANY_TO_ONE:
+                case ONE_TO_ONE:
+                    kind = Kind.TO_ONE;
+                    target = attribute.getJavaType();
+                    break;
+                case ONE_TO_MANY:
+                case MANY_TO_MANY:
+                    kind = Kind.COLLECTION;
+                    target = ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType();
+                    break;
+                case ELEMENT_COLLECTION:
+                    kind = Kind.ELEMENTS;
+                    target = null;
+                    break;
+                default:
+                    kind = attribute.getJavaType() == byte[].class ? Kind.COMPRESSED : Kind.SCALAR;
+                    target = null;
+                    break;
+            }
+        }
+    }
+
+    private final class Fields {
+
+        final Class<?> type;
+        final Map<String, Field> fields = new LinkedHashMap<>();
+
+        Fields(Class<?> type) {
+            this.type = type;
+        }
+
+        void add(String[] path, int depth) throws InvalidFieldException {
+            Property property = properties(type).get(path[depth]);
+            if (property == null) {
+                throw new InvalidFieldException();
+            }
+            Field field = fields.get(path[depth]);
+            if (field == null) {
+                field = new Field(path[depth], property);
+                fields.put(path[depth], field);
+            }
+            if (field.fields == null) {
+                if (depth + 1 < path.length) {
+                    throw new InvalidFieldException();
+                }
+            } else if (depth + 1 < path.length) {
+                field.fields.add(path, depth + 1);
+            } else {
+                field.fields.addScalars();
+            }
+        }
+
+        // Whole entity without its associations, e.g. "author" or "commits" without sub-fields
+        void addScalars() {
+            properties(type).forEach((name, property) -> {
+                if (property.kind == Kind.SCALAR || property.kind == Kind.COMPRESSED) {
+                    fields.putIfAbsent(name, new Field(name, property));
+                }
+            });
+        }
+    }
+
+    private final class Field {
+
+        final String name;
+        final Property property;
+        final Fields fields;
+
+        Field(String name, Property property) {
+            this.name = name;
+            this.property = property;
+            this.fields = property.target == null ? null : new Fields(property.target);
+        }
+    }
+}
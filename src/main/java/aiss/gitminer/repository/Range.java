@@ -0,0 +1,45 @@
+package aiss.gitminer.repository;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import java.time.Instant;
+
+/**
+ * Filter value matching the timestamps from {@code since} (inclusive) to {@code until} (exclusive), either
+ * bound being optional. Used in place of an equality value in the filters of the keyset and projection
+ * repositories, so it is answered by a range scan of the column index.
+ */
+public class Range {
+
+    private final Instant since;
+    private final Instant until;
+
+    private Range(Instant since, Instant until) {
+        this.since = since;
+        this.until = until;
+    }
+
+    // Range of the "since" and "until" request parameters, or null if neither is present
+    public static Range of(Instant since, Instant until) {
+        return since == null && until == null ? null : new Range(since, until);
+    }
+
+    public Instant getSince() {
+        return since;
+    }
+
+    public Instant getUntil() {
+        return until;
+    }
+
+    Predicate toPredicate(CriteriaBuilder cb, Path<Instant> path) {
+        if (since == null) {
+            return cb.lessThan(path, until);
+        }
+        if (until == null) {
+            return cb.greaterThanOrEqualTo(path, since);
+        }
+        return cb.and(cb.greaterThanOrEqualTo(path, since), cb.lessThan(path, until));
+    }
+}
@@ -0,0 +1,51 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CacheRegionStats {
+
+    @JsonProperty("region")
+    private final String region;
+    @JsonProperty("size")
+    private final long size;
+    @JsonProperty("hits")
+    private final long hits;
+    @JsonProperty("misses")
+    private final long misses;
+    // Entries dropped for the size bound or the time to live, not the ones evicted by writes
+    @JsonProperty("evictions")
+    private final long evictions;
+
+    public CacheRegionStats(String region, long size, long hits, long misses, long evictions) {
+        this.region = region;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @JsonProperty("hit_ratio")
+    public double getHitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,15 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+// Kinds of documents in the search index
+public enum DocumentType {
+    COMMIT, ISSUE, COMMENT;
+
+    @JsonValue
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,79 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second-level cache of the entities and their collections, one Caffeine region each, bounded to
+ * {@code max-entries} entries and dropping them {@code ttl} milliseconds after they were written.
+ */
+@Configuration
+public class EntityCacheConfiguration {
+
+    static final String PROJECT_COMMITS = Project.class.getName() + ".commits";
+    static final String PROJECT_ISSUES = Project.class.getName() + ".issues";
+    static final String ISSUE_LABELS = Issue.class.getName() + ".labels";
+    static final String ISSUE_COMMENTS = Issue.class.getName() + ".comments";
+
+    static final List<String> REGIONS = List.of(Project.class.getName(), PROJECT_COMMITS, PROJECT_ISSUES,
+            Commit.class.getName(), Issue.class.getName(), ISSUE_LABELS, ISSUE_COMMENTS, Comment.class.getName(),
+            User.class.getName());
+
+    @Value("${gitminer.cache.enabled:true}")
+    boolean enabled;
+
+    @Value("${gitminer.cache.max-entries:10000}")
+    long maxEntries;
+
+    @Value("${gitminer.cache.ttl:600000}")
+    long ttl;
+
+    // Created under a URI of its own, so application contexts sharing the JVM (tests) never share entries
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("gitminer:" + UUID.randomUUID()),
+                getClass().getClassLoader());
+        for (String region : REGIONS) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttl)));
+            // Hibernate caches immutable disassembled state, there is nothing to copy
+            configuration.setStoreByValue(false);
+            configuration.setNativeStatisticsEnabled(true);
+            cacheManager.createCache(region, configuration);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCache(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            // Every region must be one of the bounded caches above
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
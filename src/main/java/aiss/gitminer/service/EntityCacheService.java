@@ -0,0 +1,126 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Evicts from the second-level cache, by id, what is written around Hibernate: the JDBC upserts, the issue
+ * write-behind buffer, the set-based project delete, and the lists of children a delete of the child alone
+ * leaves stale. Evictions made in a transaction are repeated once it has committed, so a read of the old rows
+ * running alongside cannot put them back. Also reports the hits, misses and evictions of each region.
+ */
+@Service
+public class EntityCacheService {
+
+    public static final String PROJECT_COMMITS = EntityCacheConfiguration.PROJECT_COMMITS;
+    public static final String PROJECT_ISSUES = EntityCacheConfiguration.PROJECT_ISSUES;
+    public static final String ISSUE_LABELS = EntityCacheConfiguration.ISSUE_LABELS;
+    public static final String ISSUE_COMMENTS = EntityCacheConfiguration.ISSUE_COMMENTS;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CacheManager entityCacheManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    public void evict(Class<?> type, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        evictNowAndAfterCommit(() -> {
+            for (String id : ids) {
+                cache.evictEntityData(type, id);
+            }
+        });
+    }
+
+    /**
+     * Evicts the collection of the given role (see the constants) of each of the owners, nulls ignored.
+     */
+    public void evictCollection(String role, Collection<String> ownerIds) {
+        List<String> owners = new ArrayList<>(ownerIds);
+        owners.removeIf(Objects::isNull);
+        if (owners.isEmpty()) {
+            return;
+        }
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        evictNowAndAfterCommit(() -> {
+            for (String owner : owners) {
+                cache.evictCollectionData(role, owner);
+            }
+        });
+    }
+
+    public void evictCollection(String role, String ownerId) {
+        evictCollection(role, Collections.singletonList(ownerId));
+    }
+
+    /**
+     * Runs the set-based delete of a project and evicts the project, its commits, issues and comments and
+     * their collections, read before it runs.
+     */
+    public void evictProject(String projectId, Runnable delete) {
+        List<String> commits = jdbcTemplate.queryForList("SELECT id FROM Commit WHERE project_id = ?", String.class,
+                projectId);
+        List<String> issues = jdbcTemplate.queryForList("SELECT id FROM Issue WHERE project_id = ?", String.class,
+                projectId);
+        List<String> comments = jdbcTemplate.queryForList("SELECT c.id FROM Comment c JOIN Issue i "
+                + "ON c.issue_id = i.id WHERE i.project_id = ?", String.class, projectId);
+        delete.run();
+        evict(Project.class, Collections.singletonList(projectId));
+        evictCollection(PROJECT_COMMITS, projectId);
+        evictCollection(PROJECT_ISSUES, projectId);
+        evict(Commit.class, commits);
+        evict(Issue.class, issues);
+        evictCollection(ISSUE_LABELS, issues);
+        evictCollection(ISSUE_COMMENTS, issues);
+        evict(Comment.class, comments);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<CacheRegionStats> getStats() {
+        List<CacheRegionStats> stats = new ArrayList<>();
+        for (String region : EntityCacheConfiguration.REGIONS) {
+            Cache<Object, Object> cache = entityCacheManager.getCache(region).unwrap(Cache.class);
+            CacheStats regionStats = cache.stats();
+            stats.add(new CacheRegionStats(region.substring(Project.class.getPackageName().length() + 1),
+                    cache.estimatedSize(), regionStats.hitCount(), regionStats.missCount(),
+                    regionStats.evictionCount()));
+        }
+        return stats;
+    }
+
+    private static void evictNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
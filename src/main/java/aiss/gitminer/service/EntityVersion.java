@@ -0,0 +1,47 @@
+package aiss.gitminer.service;
+
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Instant;
+
+/**
+ * Validators of a representation: a strong ETag made of the highest version among the rows it is built from
+ * and their number, and the last time it was updated, when known.
+ */
+public class EntityVersion {
+
+    private final String etag;
+    private final Instant lastModified;
+
+    public EntityVersion(long version, long rows, Instant lastModified) {
+        this.etag = version + "-" + rows;
+        this.lastModified = lastModified;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets the ETag and Last-Modified headers and tells whether the conditional headers of the request match
+     * them, in which case the response is a 304 and the handler should return null.
+     */
+    public boolean checkNotModified(WebRequest request) {
+        return request.checkNotModified(etag, lastModified == null ? -1 : lastModified.toEpochMilli());
+    }
+
+    // Whether an If-Match header names this ETag, compared strongly, or any
+    public boolean isMatchedBy(String ifMatch) {
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals("\"" + etag + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
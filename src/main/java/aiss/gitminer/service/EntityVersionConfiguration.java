@@ -0,0 +1,76 @@
+package aiss.gitminer.service;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Bumps the version of an issue whose labels Hibernate rewrote, as it does so without updating the issue row
+ * when nothing else changed (see EntityVersionService).
+ */
+@Configuration
+public class EntityVersionConfiguration {
+
+    @Bean
+    public HibernatePropertiesCustomizer entityVersions() {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(new LabelsListener()));
+    }
+
+    static class LabelsListener implements Integrator, PostCollectionUpdateEventListener,
+            PostCollectionRemoveEventListener {
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+            listeners.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+            listeners.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory,
+                                 SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        @Override
+        public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+            touch(event);
+        }
+
+        // Also fired for the labels replaced by a new list, before that one is inserted
+        @Override
+        public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+            touch(event);
+        }
+
+        private static void touch(AbstractCollectionEvent event) {
+            String id = (String) event.getAffectedOwnerIdOrNull();
+            if (id == null || !EntityCacheService.ISSUE_LABELS.equals(event.getCollection().getRole())) {
+                return;
+            }
+            event.getSession().doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(EntityVersionService.TOUCH_ISSUE)) {
+                    statement.setString(1, id);
+                    statement.executeUpdate();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.PreconditionFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the validators of the entities and lists served by the API without loading them. Every row of every
+ * table takes the next value of one sequence when it is inserted or updated, so the highest version among the
+ * rows a representation is built from changes with any of them, and their count changes when one is removed.
+ * Issues with updates in the write-behind buffer have none, as their rows are not yet what is served. The same
+ * validators make writes conditional on the version the client read, see {@link #checkIfMatch}.
+ */
+@Service
+public class EntityVersionService {
+
+    public static final String SEQUENCE = "entity_version";
+    public static final String COLUMN_DEFINITION = "BIGINT DEFAULT NEXT VALUE FOR " + SEQUENCE
+            + " ON UPDATE NEXT VALUE FOR " + SEQUENCE;
+    // For the labels, written to their own table without the issue row when nothing else changed
+    static final String TOUCH_ISSUE = "UPDATE Issue SET version = NEXT VALUE FOR " + SEQUENCE + " WHERE id = ?";
+
+    private static final List<String> TABLES = List.of("Project", "Commit", "Issue", "Comment", "GMUser");
+    private static final String ISSUES = "SELECT MAX(GREATEST(i.version, a.version, s.version)) version, "
+            + "COUNT(*) n, MAX(i.updated_at) updated_at FROM Issue i LEFT JOIN GMUser a ON a.id = i.author_id "
+            + "LEFT JOIN GMUser s ON s.id = i.assignee_id";
+    private static final String COMMENTS = "SELECT MAX(GREATEST(k.version, u.version)) version, COUNT(*) n, "
+            + "MAX(k.updated_at) updated_at FROM Comment k LEFT JOIN GMUser u ON u.id = k.author_id";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    IssueWriteBehindBuffer issueWriteBehindBuffer;
+
+    // The project, its commits, its issues with their comments, and their users
+    public Optional<EntityVersion> ofProject(String id) {
+        return find("SELECT GREATEST(p.version, c.version, i.version, k.version), 1 + c.n + i.n + k.n, NULL "
+                + "FROM Project p, (SELECT MAX(version) version, COUNT(*) n FROM Commit WHERE project_id = ?) c, "
+                + "(" + ISSUES + " WHERE i.project_id = ?) i, "
+                // Joined from the issues, as H2 keeps the order of the joins that follow an outer one
+                + "(SELECT MAX(GREATEST(k.version, u.version)) version, COUNT(*) n FROM Issue i "
+                + "JOIN Comment k ON k.issue_id = i.id LEFT JOIN GMUser u ON u.id = k.author_id "
+                + "WHERE i.project_id = ?) k "
+                + "WHERE p.id = ?", id, id, id, id);
+    }
+
+    public Optional<EntityVersion> ofCommit(String id) {
+        return find("SELECT version, 1, NULL FROM Commit WHERE id = ?", id);
+    }
+
+    // The issue, its comments and their users, last modified when the issue or one of its comments was
+    public Optional<EntityVersion> ofIssue(String id) {
+        if (issueWriteBehindBuffer.isBuffered(id)) {
+            return Optional.empty();
+        }
+        return find("SELECT GREATEST(i.version, k.version), i.n + k.n, GREATEST(i.updated_at, k.updated_at) "
+                + "FROM (" + ISSUES + " WHERE i.id = ?) i, (" + COMMENTS + " WHERE k.issue_id = ?) k "
+                + "WHERE i.n > 0", id, id);
+    }
+
+    public Optional<EntityVersion> ofComment(String id) {
+        return find(COMMENTS + " WHERE k.id = ?", id);
+    }
+
+    public Optional<EntityVersion> ofProjects() {
+        return ofTables(TABLES);
+    }
+
+    public Optional<EntityVersion> ofCommits() {
+        return ofTables(List.of("Commit"));
+    }
+
+    public Optional<EntityVersion> ofIssues() {
+        if (issueWriteBehindBuffer.hasUpdates()) {
+            return Optional.empty();
+        }
+        return ofTables(List.of("Issue", "Comment", "GMUser"));
+    }
+
+    public Optional<EntityVersion> ofComments() {
+        return ofTables(List.of("Comment", "GMUser"));
+    }
+
+    /**
+     * Refuses a write whose If-Match header names none of the current ETags of the entity in the given table,
+     * whose row is locked until the transaction ends so that no other write comes in between. Nothing to check
+     * without the header, for {@code *}, or without the entity, which the write then does not find.
+     */
+    public void checkIfMatch(String ifMatch, String table, String id) throws PreconditionFailedException {
+        if (ifMatch == null) {
+            return;
+        }
+        List<String> rows = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id = ? FOR UPDATE",
+                String.class, id);
+        if (rows.isEmpty() || ifMatch.trim().equals("*")) {
+            return;
+        }
+        // A buffered issue has no ETag, and none the client read is still current
+        Optional<EntityVersion> version = validators().get(table).apply(id);
+        if (version.isEmpty() || !version.get().isMatchedBy(ifMatch)) {
+            throw new PreconditionFailedException();
+        }
+    }
+
+    public void touchIssues(Collection<String> ids) {
+        List<Object[]> updates = new ArrayList<>();
+        for (String id : ids) {
+            updates.add(new Object[]{id});
+        }
+        jdbcTemplate.batchUpdate(TOUCH_ISSUE, updates);
+    }
+
+    /**
+     * Restarts the sequence above the versions of rows inserted with theirs, as a snapshot restore does.
+     */
+    public void restartSequence() {
+        Long max = jdbcTemplate.queryForObject("SELECT GREATEST(" + TABLES.stream()
+                .map(table -> "(SELECT MAX(version) FROM " + table + ")")
+                .collect(Collectors.joining(", ")) + ")", Long.class);
+        jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " RESTART WITH " + (max == null ? 1 : max + 1));
+    }
+
+    private Map<String, Function<String, Optional<EntityVersion>>> validators() {
+        return Map.of("Project", this::ofProject, "Commit", this::ofCommit, "Issue", this::ofIssue,
+                "Comment", this::ofComment);
+    }
+
+    // Whole tables, whose highest version and count are both read from an index
+    private Optional<EntityVersion> ofTables(List<String> tables) {
+        String versions = tables.stream().map(table -> "COALESCE((SELECT MAX(version) FROM " + table + "), 0)")
+                .collect(Collectors.joining(", "));
+        String counts = tables.stream().map(table -> "(SELECT COUNT(*) FROM " + table + ")")
+                .collect(Collectors.joining(" + "));
+        return find("SELECT GREATEST(" + versions + "), " + counts + ", NULL");
+    }
+
+    // Selects the highest version, the number of rows and the last update, no version meaning no entity
+    private Optional<EntityVersion> find(String sql, Object... args) {
+        List<EntityVersion> versions = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long version = rs.getLong(1);
+            if (rs.wasNull()) {
+                return null;
+            }
+            Timestamp updatedAt = rs.getTimestamp(3);
+            return new EntityVersion(version, rs.getLong(2), updatedAt == null ? null
+                    : updatedAt.toLocalDateTime().toInstant(ZoneOffset.UTC));
+        }, args);
+        return versions.isEmpty() ? Optional.empty() : Optional.ofNullable(versions.get(0));
+    }
+}
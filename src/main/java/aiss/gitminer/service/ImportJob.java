@@ -0,0 +1,109 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String projectId;
+    private final Instant submittedAt = Instant.now();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile long entitiesWritten;
+    private volatile long entitiesUncommitted;
+    private volatile UpsertReport report;
+    private volatile String failure;
+
+    public ImportJob(String projectId) {
+        this.projectId = projectId;
+    }
+
+    @JsonProperty("id")
+    public String getId() {
+        return id;
+    }
+
+    @JsonProperty("project_id")
+    public String getProjectId() {
+        return projectId;
+    }
+
+    @JsonProperty("status")
+    public Status getStatus() {
+        return status;
+    }
+
+    @JsonProperty("entities_written")
+    public long getEntitiesWritten() {
+        return entitiesWritten;
+    }
+
+    // Rows the running import has written so far, which its commit adds to entities_written and a rollback drops
+    @JsonProperty("entities_uncommitted")
+    public long getEntitiesUncommitted() {
+        return entitiesUncommitted;
+    }
+
+    @JsonProperty("submitted_at")
+    public String getSubmittedAt() {
+        return submittedAt.toString();
+    }
+
+    // Time spent running so far, or in total once finished
+    @JsonProperty("elapsed_ms")
+    public Long getElapsedMs() {
+        if (startedAt == null) {
+            return null;
+        }
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+    }
+
+    @JsonProperty("written")
+    public UpsertReport getReport() {
+        return report;
+    }
+
+    @JsonProperty("failure")
+    public String getFailure() {
+        return failure;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void progress(long entitiesUncommitted) {
+        this.entitiesUncommitted = entitiesUncommitted;
+    }
+
+    void succeeded(UpsertReport report) {
+        this.report = report;
+        this.entitiesWritten = report.getWritten();
+        entitiesUncommitted = 0;
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void failed(Throwable cause) {
+        failure = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+        entitiesUncommitted = 0;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
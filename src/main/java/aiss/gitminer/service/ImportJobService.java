@@ -0,0 +1,112 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.ImportQueueFullException;
+import aiss.gitminer.model.Project;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs project imports on a bounded worker pool. Jobs wait in a bounded queue and are rejected once it is
+ * full, so the graphs waiting to be written never take more than {@code queue-capacity} projects of heap.
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    @Autowired
+    UpsertService upsertService;
+
+    @Value("${gitminer.jobs.pool-size:2}")
+    int poolSize;
+
+    @Value("${gitminer.jobs.queue-capacity:16}")
+    int queueCapacity;
+
+    // Finished jobs kept around so their status can still be polled
+    @Value("${gitminer.jobs.retained:1000}")
+    int retained;
+
+    private final Map<String, ImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "import-job-" + threads.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} import jobs still running at shutdown", executor.getActiveCount());
+            executor.shutdownNow();
+        }
+    }
+
+    public ImportJob submit(Project project) throws ImportQueueFullException {
+        ImportJob job = new ImportJob(project.getId());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, project));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new ImportQueueFullException();
+        }
+        evictFinished();
+        return job;
+    }
+
+    public Optional<ImportJob> findById(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // Errors fail the job too, so that it never stays running, and are rethrown to the worker
+    private void run(ImportJob job, Project project) {
+        job.started();
+        try {
+            // The project is written in one transaction, which returns once committed
+            job.succeeded(upsertService.upsertProject(project, job::progress));
+        } catch (Throwable e) {
+            log.warn("Import job {} for project {} failed", job.getId(), job.getProjectId(), e);
+            job.failed(e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    // Drops the oldest finished jobs once more than the retained number are tracked
+    private void evictFinished() {
+        synchronized (jobs) {
+            Iterator<ImportJob> it = jobs.values().iterator();
+            int excess = jobs.size() - retained;
+            while (excess > 0 && it.hasNext()) {
+                if (it.next().isFinished()) {
+                    it.remove();
+                    excess--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportReport {
+
+    private static final int MAX_ERRORS = 100;
+
+    @JsonProperty("projects")
+    private long projects;
+    @JsonProperty("entities")
+    private long entities;
+    @JsonProperty("rejected")
+    private long rejected;
+    @JsonProperty("errors")
+    private List<String> errors = new ArrayList<>();
+
+    public long getProjects() {
+        return projects;
+    }
+
+    public long getEntities() {
+        return entities;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    synchronized void addImported(long entityCount) {
+        projects++;
+        entities += entityCount;
+    }
+
+    synchronized void addRejected(String error) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Issue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces PUTs on issues in memory and writes them every {@code window} milliseconds as batched UPDATEs,
+ * so a vote storm on one issue costs a single row write per window. Entries stay visible to readers for one
+ * window after the flush that wrote them has committed, and the buffer is flushed when the context stops.
+ */
+@Service
+public class IssueWriteBehindBuffer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(IssueWriteBehindBuffer.class);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${gitminer.issues.write-behind.enabled:false}")
+    boolean enabled;
+
+    private final Map<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+    // Last written batch, still applied to reads that loaded their rows before it committed
+    private volatile Map<String, PendingUpdate> flushed = Collections.emptyMap();
+    private volatile boolean running;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers the state, labels and votes of the update, replacing any pending update of the same issue.
+     */
+    public void update(String id, Issue update) {
+        Instant now = Instant.now();
+        Instant closedAt = "closed".equals(update.getState()) ? now : null;
+        List<String> labels = update.getLabels() == null ? Collections.emptyList() : new ArrayList<>(update.getLabels());
+        pending.compute(id, (key, previous) -> new PendingUpdate(update.getState(), now,
+                closedAt != null || previous == null ? closedAt : previous.closedAt, labels, update.getVotes()));
+    }
+
+    /**
+     * Applies the pending update of the issue, if any, to a detached copy so it is never written through JPA.
+     */
+    public Issue overlay(Issue issue) {
+        PendingUpdate update = pending.get(issue.getId());
+        if (update == null) {
+            update = flushed.get(issue.getId());
+        }
+        if (update == null) {
+            return issue;
+        }
+        if (entityManager.contains(issue)) {
+            entityManager.detach(issue);
+        }
+        issue.setState(update.state);
+        issue.setUpdatedAt(update.updatedAt);
+        if (update.closedAt != null) {
+            issue.setClosedAt(update.closedAt);
+        }
+        issue.setLabels(new ArrayList<>(update.labels));
+        issue.setVotes(update.votes);
+        return issue;
+    }
+
+    /**
+     * Applies the pending update of the issue, if any, to the requested fields of a projected row.
+     */
+    public void overlay(String id, Map<String, Object> row) {
+        PendingUpdate update = pending.get(id);
+        if (update == null) {
+            update = flushed.get(id);
+        }
+        if (update == null) {
+            return;
+        }
+        row.replace("state", update.state);
+        row.replace("updated_at", update.updatedAt);
+        if (update.closedAt != null) {
+            row.replace("closed_at", update.closedAt);
+        }
+        row.replace("labels", new ArrayList<>(update.labels));
+        row.replace("votes", update.votes);
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    // Whether reads of the issue are overlaid, and do not show its row as stored
+    public boolean isBuffered(String id) {
+        return pending.containsKey(id) || flushed.containsKey(id);
+    }
+
+    public boolean hasUpdates() {
+        return !pending.isEmpty() || !flushed.isEmpty();
+    }
+
+    /**
+     * Writes the pending update of the issue, if any, ahead of a write made around the buffer, and stops
+     * overlaying reads of the issue so they show the result of that write.
+     */
+    public synchronized void settle(String id) {
+        if (pending.containsKey(id)) {
+            flush();
+        }
+        if (flushed.containsKey(id)) {
+            flushed.remove(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gitminer.issues.write-behind.window:200}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            flushed = Collections.emptyMap();
+            return;
+        }
+        Map<String, PendingUpdate> batch = new ConcurrentHashMap<>(pending);
+        transactionTemplate.executeWithoutResult(status -> write(batch));
+        flushed = batch;
+        // Updates coalesced while the batch was written are newer objects and stay pending
+        batch.forEach(pending::remove);
+    }
+
+    private void write(Map<String, PendingUpdate> batch) {
+        List<String> ids = new ArrayList<>(batch.keySet());
+        List<Object[]> updates = new ArrayList<>();
+        for (String id : ids) {
+            PendingUpdate update = batch.get(id);
+            updates.add(new Object[]{update.state, UpsertService.utc(update.updatedAt),
+                    UpsertService.utc(update.closedAt), update.votes, id});
+        }
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE Issue SET state = ?, updated_at = ?, "
+                + "closed_at = COALESCE(?, closed_at), votes = ? WHERE id = ?", updates);
+
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            // Issues deleted since the update was buffered have nothing left to update
+            if (counts[i] == 0) {
+                continue;
+            }
+            deletes.add(new Object[]{ids.get(i)});
+            for (String label : batch.get(ids.get(i)).labels) {
+                inserts.add(new Object[]{ids.get(i), label});
+            }
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM Issue_labels WHERE issue_id = ?", deletes);
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO Issue_labels (issue_id, labels) VALUES (?, ?)", inserts);
+        }
+        entityCacheService.evict(Issue.class, ids);
+        entityCacheService.evictCollection(EntityCacheService.ISSUE_LABELS, ids);
+        log.debug("Flushed {} buffered issue updates", ids.size());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    // Runs before the scheduler and the datasource are destroyed
+    @Override
+    public void stop() {
+        flush();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class PendingUpdate {
+
+        final String state;
+        final Instant updatedAt;
+        final Instant closedAt;
+        final List<String> labels;
+        final Integer votes;
+
+        PendingUpdate(String state, Instant updatedAt, Instant closedAt, List<String> labels, Integer votes) {
+            this.state = state;
+            this.updatedAt = updatedAt;
+            this.closedAt = closedAt;
+            this.labels = labels;
+            this.votes = votes;
+        }
+    }
+}
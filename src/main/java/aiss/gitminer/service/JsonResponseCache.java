@@ -0,0 +1,147 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON of entities read by id, kept with the version it was serialized at (see EntityVersionService)
+ * and gzipped as well, so reads of an unchanged entity write the stored bytes instead of loading and serializing
+ * its graph. A write changes the version, and the next read replaces the entry. Entries are dropped, the least
+ * recently and frequently used first, past {@code max-bytes} of plain and gzipped JSON, and {@code ttl}
+ * milliseconds after they were written, like the entities they were serialized from.
+ */
+@Service
+public class JsonResponseCache {
+
+    public static final String REGION = "responses";
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${gitminer.response-cache.enabled:true}")
+    boolean enabled;
+
+    @Value("${gitminer.response-cache.max-bytes:67108864}")
+    long maxBytes;
+
+    @Value("${gitminer.response-cache.ttl:600000}")
+    long ttl;
+
+    @Value("${gitminer.response-cache.gzip:true}")
+    boolean gzip;
+
+    private Cache<String, Entry> cache;
+    // Counted here, as an entry of an older version is found but missed
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void start() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Responds with the JSON of the entity at the given version, serialized from what the loader returns when
+     * it is not cached, gzipped if the request accepts it. Empty if the loader finds no entity.
+     */
+    public <T> Optional<ResponseEntity<byte[]>> find(Class<T> type, String id, EntityVersion version,
+                                                     WebRequest request, Supplier<Optional<T>> loader) {
+        String key = type.getSimpleName() + "/" + id;
+        Entry entry = enabled ? cache.asMap().get(key) : null;
+        if (entry != null && entry.etag.equals(version.getEtag())) {
+            hits.increment();
+        } else {
+            misses.increment();
+            Optional<T> entity = loader.get();
+            if (entity.isEmpty()) {
+                cache.invalidate(key);
+                return Optional.empty();
+            }
+            byte[] json = serialize(entity.get());
+            entry = new Entry(version.getEtag(), json, enabled && gzip ? gzip(json) : null);
+            if (enabled) {
+                cache.put(key, entry);
+            }
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (entry.gzipped == null) {
+            return Optional.of(response.body(entry.json));
+        }
+        response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            return Optional.of(response.body(entry.json));
+        }
+        return Optional.of(response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzipped));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheRegionStats getStats() {
+        return new CacheRegionStats(REGION, cache.estimatedSize(), hits.sum(), misses.sum(),
+                cache.stats().evictionCount());
+    }
+
+    private byte[] serialize(Object entity) {
+        try {
+            return objectMapper.writeValueAsBytes(entity);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static class Entry {
+
+        private final String etag;
+        private final byte[] json;
+        private final byte[] gzipped;
+
+        private Entry(String etag, byte[] json, byte[] gzipped) {
+            this.etag = etag;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        private int weight() {
+            return json.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class ProjectDeleteService {
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    SearchService searchService;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    /**
+     * Deletes a project with its commits, issues and comments in one transaction, which also reads the ids
+     * to drop from the search index and the second-level cache. The documents leave the index once the
+     * delete has committed, and stay if it rolls back. Deleting a missing project changes nothing.
+     */
+    @Transactional
+    public void deleteProject(String projectId) {
+        // The set-based delete skips the entity listeners and the second-level cache
+        searchService.removeProject(projectId);
+        entityCacheService.evictProject(projectId, () -> projectRepository.deleteGraph(projectId));
+    }
+}
@@ -0,0 +1,32 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProjectDelta {
+
+    @JsonProperty("commits")
+    private List<Commit> commits = new ArrayList<>();
+    @JsonProperty("issues")
+    private List<Issue> issues = new ArrayList<>();
+
+    public List<Commit> getCommits() {
+        return commits;
+    }
+
+    public void setCommits(List<Commit> commits) {
+        this.commits = commits;
+    }
+
+    public List<Issue> getIssues() {
+        return issues;
+    }
+
+    public void setIssues(List<Issue> issues) {
+        this.issues = issues;
+    }
+}
@@ -0,0 +1,175 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.CompressedText;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Writes a project as newline-delimited JSON, one record per line: the project, then its commits, its issues
+ * (labels and users included) and their comments, each tagged with a {@code type} and comments with their
+ * {@code issue_id}. Rows are read with forward-only cursors and written as they arrive, and H2 runs the
+ * queries lazily, so neither side holds more than the current row whatever the size of the project.
+ */
+@Service
+public class ProjectExportService {
+
+    private static final String PROJECT = "SELECT id, name, web_url FROM Project WHERE id = ?";
+    private static final String COMMITS = "SELECT id, title, message, author_name, author_email, authored_date, "
+            + "web_url FROM Commit WHERE project_id = ?";
+    private static final String ISSUES = "SELECT i.id, i.title, i.description, i.state, i.created_at, i.updated_at, "
+            + "i.closed_at, (SELECT ARRAY_AGG(l.labels) FROM Issue_labels l WHERE l.issue_id = i.id), i.votes, "
+            + "a.id, a.username, a.name, a.avatar_url, a.web_url, s.id, s.username, s.name, s.avatar_url, s.web_url "
+            + "FROM Issue i LEFT JOIN GMUser a ON a.id = i.author_id LEFT JOIN GMUser s ON s.id = i.assignee_id "
+            + "WHERE i.project_id = ?";
+    private static final String COMMENTS = "SELECT c.id, c.body, c.created_at, c.updated_at, c.issue_id, "
+            + "u.id, u.username, u.name, u.avatar_url, u.web_url "
+            + "FROM Comment c JOIN Issue i ON i.id = c.issue_id LEFT JOIN GMUser u ON u.id = c.author_id "
+            + "WHERE i.project_id = ?";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    IssueWriteBehindBuffer issueWriteBehindBuffer;
+
+    /**
+     * Writes the project to the stream, without closing it. Nothing is written if the project does not exist.
+     */
+    public void export(String projectId, OutputStream out) throws IOException {
+        // Buffered issue updates are written first so the export sees them
+        if (issueWriteBehindBuffer.isEnabled()) {
+            issueWriteBehindBuffer.flush();
+        }
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Records are separated by the newline written after each one, not the default space
+        generator.setRootValueSeparator(null);
+        try {
+            // One connection and one snapshot for the four queries
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION TRUE");
+                try {
+                    jdbcTemplate.query(PROJECT, rows(generator, "project", this::writeProject), projectId);
+                    jdbcTemplate.query(COMMITS, rows(generator, "commit", this::writeCommit), projectId);
+                    jdbcTemplate.query(ISSUES, rows(generator, "issue", this::writeIssue), projectId);
+                    jdbcTemplate.query(COMMENTS, rows(generator, "comment", this::writeComment), projectId);
+                } finally {
+                    // The connection goes back to the pool
+                    jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.close();
+    }
+
+    private static RowCallbackHandler rows(JsonGenerator generator, String type, RowWriter writer) {
+        return rs -> {
+            try {
+                generator.writeStartObject();
+                generator.writeStringField("type", type);
+                writer.write(rs, generator);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private void writeProject(ResultSet rs, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStringField("id", rs.getString(1));
+        generator.writeStringField("name", rs.getString(2));
+        generator.writeStringField("web_url", rs.getString(3));
+    }
+
+    private void writeCommit(ResultSet rs, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStringField("id", rs.getString(1));
+        generator.writeStringField("title", rs.getString(2));
+        generator.writeStringField("message", CompressedText.decompress(rs.getBytes(3)));
+        generator.writeStringField("author_name", rs.getString(4));
+        generator.writeStringField("author_email", rs.getString(5));
+        writeInstant(generator, "authored_date", rs, 6);
+        generator.writeStringField("web_url", rs.getString(7));
+    }
+
+    private void writeIssue(ResultSet rs, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStringField("id", rs.getString(1));
+        generator.writeStringField("title", rs.getString(2));
+        generator.writeStringField("description", CompressedText.decompress(rs.getBytes(3)));
+        generator.writeStringField("state", rs.getString(4));
+        writeInstant(generator, "created_at", rs, 5);
+        writeInstant(generator, "updated_at", rs, 6);
+        writeInstant(generator, "closed_at", rs, 7);
+        generator.writeArrayFieldStart("labels");
+        Array labels = rs.getArray(8);
+        if (labels != null) {
+            for (Object label : (Object[]) labels.getArray()) {
+                generator.writeString((String) label);
+            }
+        }
+        generator.writeEndArray();
+        writeUser(generator, "author", rs, 10);
+        writeUser(generator, "assignee", rs, 15);
+        generator.writeObjectField("votes", rs.getObject(9));
+    }
+
+    private void writeComment(ResultSet rs, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStringField("id", rs.getString(1));
+        generator.writeStringField("issue_id", rs.getString(5));
+        generator.writeStringField("body", CompressedText.decompress(rs.getBytes(2)));
+        writeUser(generator, "author", rs, 6);
+        writeInstant(generator, "created_at", rs, 3);
+        writeInstant(generator, "updated_at", rs, 4);
+    }
+
+    // Users are read from five columns starting at the given one
+    private static void writeUser(JsonGenerator generator, String name, ResultSet rs, int column)
+            throws SQLException, IOException {
+        if (rs.getString(column) == null) {
+            generator.writeNullField(name);
+            return;
+        }
+        generator.writeObjectFieldStart(name);
+        generator.writeStringField("id", rs.getString(column));
+        generator.writeStringField("username", rs.getString(column + 1));
+        generator.writeStringField("name", rs.getString(column + 2));
+        generator.writeStringField("avatar_url", rs.getString(column + 3));
+        generator.writeStringField("web_url", rs.getString(column + 4));
+        generator.writeEndObject();
+    }
+
+    // Timestamps are stored as UTC wall-clock time, see UpsertService.utc
+    private static void writeInstant(JsonGenerator generator, String name, ResultSet rs, int column)
+            throws SQLException, IOException {
+        LocalDateTime value = rs.getObject(column, LocalDateTime.class);
+        generator.writeObjectField(name, value == null ? null : value.toInstant(ZoneOffset.UTC));
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+
+        void write(ResultSet rs, JsonGenerator generator) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,226 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.ImportAbortedException;
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Service
+public class ProjectImportService {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    Validator validator;
+
+    // Number of entities merged before the persistence context is flushed and cleared
+    @Value("${gitminer.import.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${gitminer.import.parallelism:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    int parallelism;
+
+    @Autowired
+    UpsertService upsertService;
+
+    private final StripedLocks userLocks = new StripedLocks(256);
+
+    /**
+     * Reads newline-delimited Project documents from the stream one at a time and persists them in chunks,
+     * so neither the parsed graphs nor the persistence context grow with the size of the upload. A malformed
+     * record ends the import, and the exception carries the report of the chunks already committed.
+     */
+    public ImportReport importProjects(InputStream in) throws IOException, ImportAbortedException {
+        ImportReport report = new ImportReport();
+        UserIdentityCache users = new UserIdentityCache(entityManager);
+        List<Project> chunk = new ArrayList<>();
+        long[] pending = {0};
+
+        try {
+            readProjects(in, report, project -> {
+                chunk.add(project);
+                pending[0] += countEntities(project);
+                if (pending[0] >= chunkSize) {
+                    persistChunk(chunk, users, report);
+                    pending[0] = 0;
+                }
+            });
+        } catch (JsonProcessingException e) {
+            throw new ImportAbortedException(report, e);
+        }
+        persistChunk(chunk, users, report);
+        return report;
+    }
+
+    /**
+     * Same as {@link #importProjects(InputStream)}, but writes up to {@code parallelism} projects at once, each
+     * in its own transactions. Projects only share user rows, so the users of a project are upserted first in a
+     * short transaction holding the locks of their ids, and the rest of the graph is written without locks.
+     * Whatever way the stream ends, the projects already handed to the workers are written before returning.
+     */
+    public ImportReport importProjectsParallel(InputStream in) throws IOException, ImportAbortedException {
+        ImportReport report = new ImportReport();
+        // Bounds the parsed graphs waiting for a worker
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                runnable -> new Thread(runnable, "bulk-import-" + threads.incrementAndGet()));
+        try {
+            try {
+                readProjects(in, report, project -> {
+                    inFlight.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            persistProject(project);
+                            report.addImported(countEntities(project));
+                        } catch (RuntimeException e) {
+                            report.addRejected("project " + project.getId() + ": " + e.getMessage());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                });
+            } finally {
+                awaitTermination(executor);
+            }
+        } catch (JsonProcessingException e) {
+            throw new ImportAbortedException(report, e);
+        }
+        return report;
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void persistProject(Project project) {
+        Map<String, User> users = UpsertService.collectUsers(project.getIssues());
+        userLocks.runLocked(users.keySet(), () -> upsertService.upsertUsers(users.values()));
+        upsertService.upsertProjectWithoutUsers(project);
+    }
+
+    @Transactional
+    public Project importProject(Project project) {
+        new UserIdentityCache(entityManager).resolve(project);
+        return entityManager.merge(project);
+    }
+
+    @Transactional
+    public Issue importIssue(Issue issue) {
+        new UserIdentityCache(entityManager).resolve(issue);
+        return entityManager.merge(issue);
+    }
+
+    @Transactional
+    public Comment importComment(Comment comment) {
+        comment.setAuthor(new UserIdentityCache(entityManager).resolve(comment.getAuthor()));
+        return entityManager.merge(comment);
+    }
+
+    private void readProjects(InputStream in, ImportReport report, Consumer<Project> consumer) throws IOException {
+        long record = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in);
+             MappingIterator<Project> projects = objectMapper.readerFor(Project.class).readValues(parser)) {
+            while (projects.hasNextValue()) {
+                Project project = projects.nextValue();
+                record++;
+
+                Set<ConstraintViolation<Project>> violations = validator.validate(project);
+                if (!violations.isEmpty()) {
+                    report.addRejected("record " + record + ": " + violations.stream()
+                            .map(ConstraintViolation::getMessage)
+                            .collect(Collectors.joining(", ")));
+                    continue;
+                }
+                consumer.accept(project);
+            }
+        } catch (JsonProcessingException e) {
+            report.addRejected("record " + (record + 1) + ": " + e.getOriginalMessage());
+            throw e;
+        }
+    }
+
+    private void persistChunk(List<Project> chunk, UserIdentityCache users, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Project project : chunk) {
+                users.resolve(project);
+                entityManager.merge(project);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            users.clear();
+        });
+        for (Project project : chunk) {
+            report.addImported(countEntities(project));
+        }
+        chunk.clear();
+    }
+
+    static long countEntities(Project project) {
+        long count = 1;
+        if (project.getCommits() != null) {
+            count += project.getCommits().size();
+        }
+        if (project.getIssues() != null) {
+            for (Issue issue : project.getIssues()) {
+                count++;
+                if (issue.getAuthor() != null) {
+                    count++;
+                }
+                if (issue.getAssignee() != null) {
+                    count++;
+                }
+                if (issue.getComments() != null) {
+                    count += issue.getComments().stream()
+                            .mapToLong(comment -> comment.getAuthor() != null ? 2 : 1)
+                            .sum();
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProjectStats {
+
+    @JsonProperty("commits")
+    private long commits;
+    @JsonProperty("commits_per_author")
+    private final List<AuthorCommits> commitsPerAuthor = new ArrayList<>();
+    @JsonProperty("issues")
+    private long issues;
+    @JsonProperty("issues_per_state")
+    private final List<StateIssues> issuesPerState = new ArrayList<>();
+    @JsonProperty("closed_issues")
+    private long closedIssues;
+    // Null until an issue with a creation date has been closed
+    @JsonProperty("mean_seconds_to_close")
+    private Double meanSecondsToClose;
+    @JsonProperty("comments")
+    private long comments;
+    @JsonProperty("comments_per_issue")
+    private double commentsPerIssue;
+    @JsonProperty("max_comments_per_issue")
+    private long maxCommentsPerIssue;
+
+    public long getCommits() {
+        return commits;
+    }
+
+    public List<AuthorCommits> getCommitsPerAuthor() {
+        return commitsPerAuthor;
+    }
+
+    public long getIssues() {
+        return issues;
+    }
+
+    public List<StateIssues> getIssuesPerState() {
+        return issuesPerState;
+    }
+
+    public long getClosedIssues() {
+        return closedIssues;
+    }
+
+    public Double getMeanSecondsToClose() {
+        return meanSecondsToClose;
+    }
+
+    public long getComments() {
+        return comments;
+    }
+
+    public double getCommentsPerIssue() {
+        return commentsPerIssue;
+    }
+
+    public long getMaxCommentsPerIssue() {
+        return maxCommentsPerIssue;
+    }
+
+    void addAuthor(String authorName, long commits) {
+        commitsPerAuthor.add(new AuthorCommits(authorName, commits));
+        this.commits += commits;
+    }
+
+    void addState(String state, long issues) {
+        issuesPerState.add(new StateIssues(state, issues));
+        this.issues += issues;
+    }
+
+    void setTimeToClose(long closedIssues, Double meanSecondsToClose) {
+        this.closedIssues = closedIssues;
+        this.meanSecondsToClose = meanSecondsToClose;
+    }
+
+    void setComments(long issues, long comments, long maxCommentsPerIssue) {
+        this.comments = comments;
+        this.commentsPerIssue = issues == 0 ? 0 : (double) comments / issues;
+        this.maxCommentsPerIssue = maxCommentsPerIssue;
+    }
+
+    public static class AuthorCommits {
+
+        @JsonProperty("author_name")
+        private final String authorName;
+        @JsonProperty("commits")
+        private final long commits;
+
+        AuthorCommits(String authorName, long commits) {
+            this.authorName = authorName;
+            this.commits = commits;
+        }
+
+        public String getAuthorName() {
+            return authorName;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+    }
+
+    public static class StateIssues {
+
+        @JsonProperty("state")
+        private final String state;
+        @JsonProperty("issues")
+        private final long issues;
+
+        StateIssues(String state, long issues) {
+            this.state = state;
+            this.issues = issues;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public long getIssues() {
+            return issues;
+        }
+    }
+}
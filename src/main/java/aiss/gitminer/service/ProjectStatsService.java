@@ -0,0 +1,42 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class ProjectStatsService {
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    /**
+     * Computes the statistics of a project with GROUP BY queries, without loading any of its entities.
+     */
+    @Transactional(readOnly = true)
+    public ProjectStats stats(String projectId) throws ProjectNotFoundException {
+        if (!projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        ProjectStats stats = new ProjectStats();
+        for (Object[] row : projectRepository.countCommitsByAuthor(projectId)) {
+            stats.addAuthor((String) row[0], count(row[1]));
+        }
+        for (Object[] row : projectRepository.countIssuesByState(projectId)) {
+            stats.addState((String) row[0], count(row[1]));
+        }
+        Object[] timeToClose = projectRepository.findTimeToClose(projectId).get(0);
+        Number meanSeconds = (Number) timeToClose[1];
+        stats.setTimeToClose(count(timeToClose[0]), meanSeconds == null ? null : meanSeconds.doubleValue());
+        Object[] comments = projectRepository.countCommentsPerIssue(projectId).get(0);
+        stats.setComments(count(comments[0]), count(comments[1]), count(comments[2]));
+        return stats;
+    }
+
+    // COUNT is a BIGINT, SUM of counts a NUMERIC
+    private static long count(Object value) {
+        return ((Number) value).longValue();
+    }
+}
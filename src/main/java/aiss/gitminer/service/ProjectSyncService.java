@@ -0,0 +1,53 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.exception.ForeignIdException;
+import aiss.gitminer.exception.ProjectNotFoundException;
+import aiss.gitminer.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+@Service
+public class ProjectSyncService {
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    UpsertService upsertService;
+
+    /**
+     * Appends or patches the commits, issues and comments of an existing project without loading
+     * its current collections, and returns the new watermark. A delta with ids of another project is refused
+     * whole, as syncing it would move those rows and their comments to this one.
+     */
+    @Transactional(rollbackFor = {ProjectNotFoundException.class, ForeignIdException.class})
+    public SyncResult sync(String projectId, ProjectDelta delta) throws ProjectNotFoundException, ForeignIdException {
+        if (!projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        if (!upsertService.findOwnedElsewhere(projectId, delta.getCommits(), delta.getIssues()).isEmpty()) {
+            throw new ForeignIdException();
+        }
+        UpsertReport written = upsertService.upsertChildren(projectId, delta.getCommits(), delta.getIssues());
+        return new SyncResult(watermarkOf(projectId), written);
+    }
+
+    @Transactional(readOnly = true)
+    public SyncResult watermark(String projectId) throws ProjectNotFoundException {
+        if (!projectRepository.existsById(projectId)) {
+            throw new ProjectNotFoundException();
+        }
+        return new SyncResult(watermarkOf(projectId), null);
+    }
+
+    // Timestamps are stored as UTC wall-clock time, see UpsertService.utc
+    private Instant watermarkOf(String projectId) {
+        Timestamp watermark = projectRepository.findWatermark(projectId);
+        return watermark == null ? null : watermark.toLocalDateTime().toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,31 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class SearchHit {
+
+    @JsonProperty("type")
+    private final DocumentType type;
+    @JsonProperty("id")
+    private final String id;
+    @JsonProperty("score")
+    private final float score;
+
+    public SearchHit(DocumentType type, String id, float score) {
+        this.type = type;
+        this.id = id;
+        this.score = score;
+    }
+
+    public DocumentType getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
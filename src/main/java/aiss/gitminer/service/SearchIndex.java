@@ -0,0 +1,338 @@
+package aiss.gitminer.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory inverted index ranking documents with BM25. Each term maps to the numbers of the documents holding
+ * it, in increasing order, with the term frequency. A changed or removed document is only marked deleted, and
+ * its postings are dropped once deleted documents reach a quarter of the live ones. Searches share a read
+ * lock and writes are serialized.
+ */
+public class SearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // Title terms count as this many occurrences
+    private static final int TITLE_WEIGHT = 2;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int MIN_COMPACTION = 1024;
+    private static final Set<String> STOP_WORDS = Set.of("an", "and", "are", "as", "at", "be", "by", "for",
+            "from", "in", "is", "it", "of", "on", "or", "that", "the", "this", "to", "was", "with");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Document number by type and id
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private String[] ids = new String[1024];
+    private byte[] types = new byte[1024];
+    private int[] lengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private int next;
+    private int live;
+    private int dead;
+    private long totalLength;
+
+    /**
+     * Indexes the document, replacing any previous version of it.
+     */
+    public void put(DocumentType type, String id, String title, String body) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = count(title, TITLE_WEIGHT, frequencies) + count(body, 1, frequencies);
+        lock.writeLock().lock();
+        try {
+            removeLocked(key(type, id));
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            int number = next++;
+            if (number == ids.length) {
+                ids = Arrays.copyOf(ids, number * 2);
+                types = Arrays.copyOf(types, number * 2);
+                lengths = Arrays.copyOf(lengths, number * 2);
+            }
+            ids[number] = id;
+            types[number] = (byte) type.ordinal();
+            lengths[number] = length;
+            numbers.put(key(type, id), number);
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).add(number, frequency));
+            live++;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(DocumentType type, String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key(type, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            numbers.clear();
+            deleted.clear();
+            Arrays.fill(ids, 0, next, null);
+            next = 0;
+            live = 0;
+            dead = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the documents of the given types (all if empty) holding any of the query terms, and returns
+     * {@code limit} hits from the {@code offset}-th one with the number of matching documents.
+     */
+    public SearchResult search(String query, Set<DocumentType> documentTypes, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>();
+        tokenize(query, terms::add);
+        int typeMask = 0;
+        for (DocumentType type : documentTypes) {
+            typeMask |= 1 << type.ordinal();
+        }
+        if (typeMask == 0) {
+            typeMask = ~0;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || live == 0) {
+                return new SearchResult(0, Collections.emptyList());
+            }
+            float averageLength = (float) totalLength / live;
+            int touched = 0;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                touched += list == null ? 0 : list.size;
+            }
+            // No more documents than the index holds, whatever the postings add up to
+            Scores scores = new Scores(Math.min(touched, next));
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                // Deleted documents still count until the next compaction
+                int documents = Math.min(list.size, live);
+                float idf = (float) Math.log(1 + (live - documents + 0.5) / (documents + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int number = list.numbers[i];
+                    float tf = list.frequencies[i];
+                    float norm = K1 * (1 - B + B * lengths[number] / averageLength);
+                    scores.add(number, idf * tf * (K1 + 1) / (tf + norm));
+                }
+            }
+
+            // Slots of the hits, the lowest ranked at the head so it is the one replaced by a better one
+            int wanted = offset + limit;
+            float[] ranked = scores.values;
+            int[] scored = scores.numbers;
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, Math.min(wanted, touched)),
+                    (a, b) -> ranked[a] != ranked[b] ? Float.compare(ranked[a], ranked[b])
+                            : Integer.compare(scored[b], scored[a]));
+            long total = 0;
+            for (int slot = 0; slot < scored.length; slot++) {
+                int number = scored[slot];
+                if (number == Scores.FREE || deleted.get(number) || (typeMask & 1 << types[number]) == 0) {
+                    continue;
+                }
+                total++;
+                if (wanted == 0) {
+                    continue;
+                }
+                if (top.size() < wanted) {
+                    top.add(slot);
+                } else if (top.comparator().compare(slot, top.peek()) > 0) {
+                    top.poll();
+                    top.add(slot);
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>();
+            while (!top.isEmpty()) {
+                int slot = top.poll();
+                int number = scored[slot];
+                hits.add(new SearchHit(DocumentType.values()[types[number]], ids[number], ranked[slot]));
+            }
+            Collections.reverse(hits);
+            return new SearchResult(total, hits.subList(Math.min(offset, hits.size()), hits.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String key) {
+        Integer number = numbers.remove(key);
+        if (number == null) {
+            return;
+        }
+        deleted.set(number);
+        ids[number] = null;
+        live--;
+        dead++;
+        totalLength -= lengths[number];
+        if (dead > Math.max(MIN_COMPACTION, live / 4)) {
+            compact();
+        }
+    }
+
+    // Drops the postings of deleted documents and renumbers the live ones, keeping their order
+    private void compact() {
+        int[] renumbered = new int[next];
+        int count = 0;
+        for (int number = 0; number < next; number++) {
+            if (!deleted.get(number)) {
+                ids[count] = ids[number];
+                types[count] = types[number];
+                lengths[count] = lengths[number];
+                renumbered[number] = count++;
+            }
+        }
+        Arrays.fill(ids, count, next, null);
+        Iterator<Postings> lists = postings.values().iterator();
+        while (lists.hasNext()) {
+            Postings list = lists.next();
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                if (!deleted.get(list.numbers[i])) {
+                    list.numbers[size] = renumbered[list.numbers[i]];
+                    list.frequencies[size++] = list.frequencies[i];
+                }
+            }
+            if (size == 0) {
+                lists.remove();
+            } else {
+                list.trim(size);
+            }
+        }
+        numbers.replaceAll((key, number) -> renumbered[number]);
+        deleted.clear();
+        next = count;
+        dead = 0;
+    }
+
+    private static String key(DocumentType type, String id) {
+        return type.ordinal() + ":" + id;
+    }
+
+    // Adds the weighted frequencies of the terms of the text, and returns its weighted length
+    private static int count(String text, int weight, Map<String, Integer> frequencies) {
+        int[] length = {0};
+        tokenize(text, term -> {
+            frequencies.merge(term, weight, Integer::sum);
+            length[0] += weight;
+        });
+        return length[0];
+    }
+
+    // Lower-cased runs of letters and digits, without the stop words
+    static void tokenize(String text, Consumer<String> terms) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                String value = term.toString();
+                if (!STOP_WORDS.contains(value)) {
+                    terms.accept(value);
+                }
+            }
+            term.setLength(0);
+        }
+    }
+
+    /**
+     * Scores of the documents a search touches, by document number, in an open-addressing table sized to the
+     * postings of the query terms rather than to the whole index, so a search allocates what it reads. An array
+     * of the whole index kept per thread instead stays allocated in every thread of the pool that ever searched.
+     */
+    private static final class Scores {
+
+        static final int FREE = -1;
+
+        final int[] numbers;
+        final float[] values;
+        private final int mask;
+
+        Scores(int postings) {
+            // A power of two at least twice the postings, so the table is at most half full
+            int capacity = Integer.highestOneBit(Math.max(1, postings) * 2 - 1) << 1;
+            numbers = new int[capacity];
+            values = new float[capacity];
+            mask = capacity - 1;
+            Arrays.fill(numbers, FREE);
+        }
+
+        void add(int number, float score) {
+            int hash = number * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (numbers[slot] != FREE && numbers[slot] != number) {
+                slot = (slot + 1) & mask;
+            }
+            numbers[slot] = number;
+            values[slot] += score;
+        }
+    }
+
+    private static final class Postings {
+
+        int[] numbers = new int[2];
+        byte[] frequencies = new byte[2];
+        int size;
+
+        void add(int number, int frequency) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            numbers[size] = number;
+            frequencies[size++] = (byte) Math.min(frequency, Byte.MAX_VALUE);
+        }
+
+        void trim(int size) {
+            this.size = size;
+            if (size < numbers.length / 4) {
+                numbers = Arrays.copyOf(numbers, size);
+                frequencies = Arrays.copyOf(frequencies, size);
+            }
+        }
+    }
+}
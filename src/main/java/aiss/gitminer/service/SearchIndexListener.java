@@ -0,0 +1,40 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// Entity listener of the searchable entities, created by Spring so it can reach the search service
+public class SearchIndexListener {
+
+    @Autowired
+    SearchService searchService;
+
+    @PostPersist
+    @PostUpdate
+    public void index(Object entity) {
+        if (entity instanceof Commit) {
+            searchService.index((Commit) entity);
+        } else if (entity instanceof Issue) {
+            searchService.index((Issue) entity);
+        } else if (entity instanceof Comment) {
+            searchService.index((Comment) entity);
+        }
+    }
+
+    @PostRemove
+    public void remove(Object entity) {
+        if (entity instanceof Commit) {
+            searchService.remove(DocumentType.COMMIT, ((Commit) entity).getId());
+        } else if (entity instanceof Issue) {
+            searchService.remove(DocumentType.ISSUE, ((Issue) entity).getId());
+        } else if (entity instanceof Comment) {
+            searchService.remove(DocumentType.COMMENT, ((Comment) entity).getId());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package aiss.gitminer.service;
+
+import java.util.List;
+
+public class SearchResult {
+
+    private final long total;
+    private final List<SearchHit> hits;
+
+    public SearchResult(long total, List<SearchHit> hits) {
+        this.total = total;
+        this.hits = hits;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+}
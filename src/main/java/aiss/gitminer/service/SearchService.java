@@ -0,0 +1,137 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.CompressedText;
+import aiss.gitminer.model.Issue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+
+/**
+ * Keeps the search index in step with the commits, issues and comments. Changes made through JPA reach it
+ * through {@link SearchIndexListener}, and the JDBC upserts and set-based deletes call it directly. Changes
+ * made in a transaction are applied once it has committed. The index is built from the database on startup,
+ * after any snapshot has been restored and before requests are served.
+ */
+@Service
+public class SearchService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private final SearchIndex index = new SearchIndex();
+    private volatile boolean running;
+
+    public SearchResult search(String query, Set<DocumentType> types, int page, int size) {
+        return index.search(query, types, page * size, size);
+    }
+
+    public void index(Commit commit) {
+        String id = commit.getId();
+        String title = commit.getTitle();
+        String message = commit.getMessage();
+        afterCommit(() -> index.put(DocumentType.COMMIT, id, title, message));
+    }
+
+    public void index(Issue issue) {
+        String id = issue.getId();
+        String title = issue.getTitle();
+        String description = issue.getDescription();
+        afterCommit(() -> index.put(DocumentType.ISSUE, id, title, description));
+    }
+
+    public void index(Comment comment) {
+        String id = comment.getId();
+        String body = comment.getBody();
+        afterCommit(() -> index.put(DocumentType.COMMENT, id, null, body));
+    }
+
+    public void remove(DocumentType type, String id) {
+        afterCommit(() -> index.remove(type, id));
+    }
+
+    /**
+     * Removes the commits, issues and comments of a project, to be called in the transaction deleting them
+     * before the delete, see ProjectDeleteService.
+     */
+    public void removeProject(String projectId) {
+        for (String id : jdbcTemplate.queryForList("SELECT id FROM Commit WHERE project_id = ?", String.class,
+                projectId)) {
+            remove(DocumentType.COMMIT, id);
+        }
+        for (String id : jdbcTemplate.queryForList("SELECT id FROM Issue WHERE project_id = ?", String.class,
+                projectId)) {
+            remove(DocumentType.ISSUE, id);
+        }
+        for (String id : jdbcTemplate.queryForList("SELECT c.id FROM Comment c JOIN Issue i ON c.issue_id = i.id "
+                + "WHERE i.project_id = ?", String.class, projectId)) {
+            remove(DocumentType.COMMENT, id);
+        }
+    }
+
+    public int getSize() {
+        return index.size();
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        index.clear();
+        jdbcTemplate.query("SELECT id, title, message FROM Commit", rs -> {
+            index.put(DocumentType.COMMIT, rs.getString(1), rs.getString(2),
+                    CompressedText.decompress(rs.getBytes(3)));
+        });
+        jdbcTemplate.query("SELECT id, title, description FROM Issue", rs -> {
+            index.put(DocumentType.ISSUE, rs.getString(1), rs.getString(2),
+                    CompressedText.decompress(rs.getBytes(3)));
+        });
+        jdbcTemplate.query("SELECT id, body FROM Comment", rs -> {
+            index.put(DocumentType.COMMENT, rs.getString(1), null, CompressedText.decompress(rs.getBytes(2)));
+        });
+        log.info("Indexed {} documents for search in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    // Before the web server starts taking requests
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
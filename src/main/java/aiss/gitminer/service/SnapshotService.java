@@ -0,0 +1,404 @@
+package aiss.gitminer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps every table of the in-memory database to a compact binary file and loads it back on startup,
+ * so a restart does not lose the mined data.
+ * <p>
+ * File layout (gzip compressed): magic, format version, then for each table its name, its column names and
+ * its rows, every value prefixed by a one byte type tag. A row marker of 0 ends a table, an empty table name
+ * ends the file. A snapshot of another format version is not restored, as its values may not fit the columns.
+ */
+@Service
+public class SnapshotService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    private static final int MAGIC = 0x474d534e;     // "GMSN"
+    // Bumped whenever the type of a dumped column changes: 2 stores texts compressed, 3 dates as timestamps
+    private static final int FORMAT_VERSION = 3;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte BYTES = 6;
+    private static final byte LOCAL_DATE_TIME = 7;
+    private static final byte OFFSET_DATE_TIME = 8;
+    private static final byte DECIMAL = 9;
+
+    @Autowired
+    DataSource dataSource;
+
+    // The schema has to exist before a snapshot can be loaded into it
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
+    @Value("${gitminer.snapshot.enabled:false}")
+    boolean enabled;
+
+    @Value("${gitminer.snapshot.path:data/gitminer.snapshot}")
+    String path;
+
+    private SnapshotStatus status;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        status = new SnapshotStatus(Paths.get(path).toAbsolutePath().toString());
+        if (enabled && Files.exists(Paths.get(path))) {
+            try {
+                restore();
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Could not restore snapshot " + path, e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gitminer.snapshot.interval:300000}",
+            initialDelayString = "${gitminer.snapshot.interval:300000}")
+    public void scheduledSnapshot() throws IOException, SQLException {
+        if (enabled) {
+            snapshot();
+        }
+    }
+
+    @PreDestroy
+    void shutdownSnapshot() throws IOException, SQLException {
+        if (enabled) {
+            snapshot();
+        }
+    }
+
+    public SnapshotStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Writes all tables to a temporary file in one repeatable-read transaction and atomically replaces the
+     * previous snapshot with it.
+     */
+    public synchronized SnapshotStatus snapshot() throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path target = Paths.get(path).toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        long rows = 0;
+
+        try (Connection connection = dataSource.getConnection();
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)))) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                for (String table : tables(connection)) {
+                    rows += writeTable(connection, table, out);
+                }
+                out.writeUTF("");
+            } finally {
+                connection.rollback();
+                connection.setReadOnly(false);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        status.written(Instant.now().toString(), ms, rows, Files.size(target));
+        log.info("Wrote snapshot of {} rows ({} bytes) to {} in {} ms", rows, Files.size(target), target, ms);
+        return status;
+    }
+
+    private void restore() throws IOException, SQLException {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (Connection connection = dataSource.getConnection();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(
+                     new GZIPInputStream(Files.newInputStream(Paths.get(path)), 1 << 16)))) {
+            List<String> tables = tables(connection);
+            if (!isEmpty(connection, tables)) {
+                log.warn("Database is not empty, snapshot {} was not restored", path);
+                return;
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a GitMiner snapshot: " + path);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                log.warn("Snapshot {} has format version {} instead of {}, it was not restored and the next "
+                        + "snapshot replaces it", path, version, FORMAT_VERSION);
+                return;
+            }
+
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    for (String table = in.readUTF(); !table.isEmpty(); table = in.readUTF()) {
+                        rows += readTable(connection, table, tables.contains(table), in);
+                    }
+                    connection.commit();
+                } catch (IOException | SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+
+        // Restored rows keep their versions, which new ones must not repeat
+        entityVersionService.restartSequence();
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        status.restored(Instant.now().toString(), ms, rows);
+        log.info("Restored {} rows from snapshot {} in {} ms", rows, path, ms);
+    }
+
+    private long writeTable(Connection connection, String table, DataOutputStream out)
+            throws SQLException, IOException {
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + table)) {
+            int columns = rs.getMetaData().getColumnCount();
+            out.writeUTF(table);
+            out.writeInt(columns);
+            for (int i = 1; i <= columns; i++) {
+                out.writeUTF(rs.getMetaData().getColumnName(i));
+            }
+            while (rs.next()) {
+                out.writeByte(1);
+                for (int i = 1; i <= columns; i++) {
+                    writeValue(out, rs.getObject(i));
+                }
+                rows++;
+            }
+            out.writeByte(0);
+        }
+        return rows;
+    }
+
+    private long readTable(Connection connection, String table, boolean exists, DataInputStream in)
+            throws SQLException, IOException {
+        int count = in.readInt();
+        List<String> columns = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            columns.add(in.readUTF());
+        }
+        if (!exists) {
+            log.warn("Table {} of the snapshot no longer exists, skipping it", table);
+        }
+
+        // Columns dropped from the schema since the snapshot was taken are skipped
+        Set<String> current = exists ? columns(connection, table) : Collections.emptySet();
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (current.contains(columns.get(i))) {
+                kept.add(i);
+            }
+        }
+        List<String> keptNames = new ArrayList<>();
+        kept.forEach(i -> keptNames.add(columns.get(i)));
+
+        long rows = 0;
+        try (PreparedStatement insert = exists ? connection.prepareStatement("INSERT INTO " + table + " ("
+                + String.join(", ", keptNames) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(keptNames.size(), "?")) + ")") : null) {
+            Object[] row = new Object[count];
+            while (in.readByte() == 1) {
+                for (int i = 0; i < count; i++) {
+                    row[i] = readValue(in);
+                }
+                if (insert == null) {
+                    continue;
+                }
+                for (int i = 0; i < kept.size(); i++) {
+                    insert.setObject(i + 1, row[kept.get(i)]);
+                }
+                insert.addBatch();
+                if (++rows % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            if (insert != null) {
+                insert.executeBatch();
+            }
+        }
+        return rows;
+    }
+
+    private static List<String> tables(Connection connection) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                     "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    private static Set<String> columns(Connection connection, String table) throws SQLException {
+        Set<String> columns = new LinkedHashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COLUMN_NAME FROM " +
+                "INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static boolean isEmpty(Connection connection, List<String> tables) throws SQLException {
+        for (String table : tables) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                if (rs.next()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException, SQLException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            out.writeByte(STRING);
+            writeBytes(out, clob.getSubString(1, (int) clob.length()).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            out.writeByte(BYTES);
+            writeBytes(out, blob.getBytes(1, (int) blob.length()));
+        } else if (value instanceof Timestamp) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeUTF(((Timestamp) value).toLocalDateTime().toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(OFFSET_DATE_TIME);
+            out.writeUTF(value.toString());
+        } else {
+            throw new IllegalStateException("Unsupported column type in snapshot: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTES:
+                return readBytes(in);
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(in.readUTF());
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.parse(in.readUTF());
+            default:
+                throw new IOException("Corrupted snapshot, unknown value tag " + tag);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
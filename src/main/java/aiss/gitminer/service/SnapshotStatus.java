@@ -0,0 +1,74 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SnapshotStatus {
+
+    @JsonProperty("path")
+    private final String path;
+    @JsonProperty("last_written_at")
+    private String lastWrittenAt;
+    @JsonProperty("last_write_ms")
+    private Long lastWriteMs;
+    @JsonProperty("last_write_rows")
+    private Long lastWriteRows;
+    @JsonProperty("last_write_bytes")
+    private Long lastWriteBytes;
+    @JsonProperty("restored_at")
+    private String restoredAt;
+    @JsonProperty("restore_ms")
+    private Long restoreMs;
+    @JsonProperty("restore_rows")
+    private Long restoreRows;
+
+    public SnapshotStatus(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getLastWrittenAt() {
+        return lastWrittenAt;
+    }
+
+    public Long getLastWriteMs() {
+        return lastWriteMs;
+    }
+
+    public Long getLastWriteRows() {
+        return lastWriteRows;
+    }
+
+    public Long getLastWriteBytes() {
+        return lastWriteBytes;
+    }
+
+    public String getRestoredAt() {
+        return restoredAt;
+    }
+
+    public Long getRestoreMs() {
+        return restoreMs;
+    }
+
+    public Long getRestoreRows() {
+        return restoreRows;
+    }
+
+    synchronized void written(String at, long ms, long rows, long bytes) {
+        lastWrittenAt = at;
+        lastWriteMs = ms;
+        lastWriteRows = rows;
+        lastWriteBytes = bytes;
+    }
+
+    synchronized void restored(String at, long ms, long rows) {
+        restoredAt = at;
+        restoreMs = ms;
+        restoreRows = rows;
+    }
+}
@@ -0,0 +1,38 @@
+package aiss.gitminer.service;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks keyed by hash, so work on the same key is serialized while work on different keys
+ * almost never contends. Several keys are always locked in stripe order to rule out deadlocks.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLocks(int stripes) {
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void runLocked(Collection<String> keys, Runnable action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String key : keys) {
+            indexes.add(Math.floorMod(key.hashCode(), stripes.length));
+        }
+        for (Integer index : indexes) {
+            stripes[index].lock();
+        }
+        try {
+            action.run();
+        } finally {
+            for (Integer index : indexes.descendingSet()) {
+                stripes[index].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SyncResult {
+
+    @JsonProperty("watermark")
+    private final Instant watermark;
+    @JsonProperty("written")
+    private final UpsertReport written;
+
+    public SyncResult(Instant watermark, UpsertReport written) {
+        this.watermark = watermark;
+        this.written = written;
+    }
+
+    public Instant getWatermark() {
+        return watermark;
+    }
+
+    public UpsertReport getWritten() {
+        return written;
+    }
+}
@@ -0,0 +1,70 @@
+package aiss.gitminer.service;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+public class UpsertReport {
+
+    private final Map<String, Counts> tables = new LinkedHashMap<>();
+    private final LongConsumer progress;
+
+    public UpsertReport() {
+        this(written -> { });
+    }
+
+    public UpsertReport(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Counts> getTables() {
+        return tables;
+    }
+
+    public Counts get(String table) {
+        return tables.computeIfAbsent(table, t -> new Counts());
+    }
+
+    void add(String table, long inserted, long updated, long unchanged) {
+        get(table).add(inserted, updated, unchanged);
+        progress.accept(getWritten());
+    }
+
+    @JsonIgnore
+    public long getWritten() {
+        return tables.values().stream().mapToLong(c -> c.inserted + c.updated).sum();
+    }
+
+    public static class Counts {
+
+        @JsonProperty("inserted")
+        private long inserted;
+        @JsonProperty("updated")
+        private long updated;
+        @JsonProperty("unchanged")
+        private long unchanged;
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        void add(long inserted, long updated, long unchanged) {
+            this.inserted += inserted;
+            this.updated += updated;
+            this.unchanged += unchanged;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Commit;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Blob;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes mined entities with H2 {@code MERGE INTO ... KEY(id)} batches instead of JPA merges.
+ * Existing rows are read once per table to classify each entity as inserted, updated or unchanged,
+ * and only the inserted and updated ones are sent in a single batched MERGE per table.
+ */
+@Service
+public class UpsertService {
+
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private static final Table<Project> PROJECTS = new Table<>("projects", "Project", Project.class, null,
+            Arrays.asList("id", "name", "web_url"), Project::getId,
+            (p, parent) -> new Object[]{p.getId(), p.getName(), p.getWebUrl()});
+
+    private static final Table<User> USERS = new Table<>("users", "GMUser", User.class, null,
+            Arrays.asList("id", "username", "name", "avatar_url", "web_url"), User::getId,
+            (u, parent) -> new Object[]{u.getId(), u.getUsername(), u.getName(), u.getAvatarUrl(), u.getWebUrl()});
+
+    private static final Table<Commit> COMMITS = new Table<>("commits", "Commit", Commit.class,
+            EntityCacheService.PROJECT_COMMITS,
+            Arrays.asList("id", "title", "message", "author_name", "author_email", "authored_date", "web_url", "project_id"),
+            Commit::getId,
+            (c, parent) -> new Object[]{c.getId(), c.getTitle(), c.getCompressedMessage(), c.getAuthorName(),
+                    c.getAuthorEmail(), utc(c.getAuthoredDate()), c.getWebUrl(), parent});
+
+    private static final Table<Issue> ISSUES = new Table<>("issues", "Issue", Issue.class,
+            EntityCacheService.PROJECT_ISSUES,
+            Arrays.asList("id", "title", "description", "state", "created_at", "updated_at", "closed_at", "votes",
+                    "author_id", "assignee_id", "project_id"),
+            Issue::getId,
+            (i, parent) -> new Object[]{i.getId(), i.getTitle(), i.getCompressedDescription(), i.getState(),
+                    utc(i.getCreatedAt()), utc(i.getUpdatedAt()), utc(i.getClosedAt()), i.getVotes(),
+                    userId(i.getAuthor()), userId(i.getAssignee()), parent});
+
+    private static final Table<Comment> COMMENTS = new Table<>("comments", "Comment", Comment.class,
+            EntityCacheService.ISSUE_COMMENTS,
+            Arrays.asList("id", "body", "created_at", "updated_at", "author_id", "issue_id"), Comment::getId,
+            (c, parent) -> new Object[]{c.getId(), c.getCompressedBody(), utc(c.getCreatedAt()), utc(c.getUpdatedAt()),
+                    userId(c.getAuthor()), parent});
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    SearchService searchService;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Autowired
+    EntityVersionService entityVersionService;
+
+    @Transactional
+    public UpsertReport upsertProject(Project project) {
+        return upsertProject(project, written -> { });
+    }
+
+    /**
+     * Same as {@link #upsertProject(Project)}, reporting the number of rows written after each table.
+     */
+    @Transactional
+    public UpsertReport upsertProject(Project project, LongConsumer progress) {
+        UpsertReport report = new UpsertReport(progress);
+        upsertUsers(project.getIssues(), report);
+        upsert(PROJECTS, Collections.singletonMap(project, null), Collections.emptySet(), report);
+        upsertChildren(project.getId(), project.getCommits(), project.getIssues(), report);
+        return report;
+    }
+
+    /**
+     * Upserts a project and its children but not the users they reference, which must already exist.
+     */
+    @Transactional
+    public UpsertReport upsertProjectWithoutUsers(Project project) {
+        UpsertReport report = new UpsertReport();
+        upsert(PROJECTS, Collections.singletonMap(project, null), Collections.emptySet(), report);
+        upsertChildren(project.getId(), project.getCommits(), project.getIssues(), report);
+        return report;
+    }
+
+    @Transactional
+    public UpsertReport upsertUsers(Collection<User> users) {
+        UpsertReport report = new UpsertReport();
+        Map<User, String> rows = new LinkedHashMap<>();
+        for (User user : users) {
+            rows.put(user, null);
+        }
+        upsert(USERS, rows, Collections.emptySet(), report);
+        return report;
+    }
+
+    @Transactional
+    public UpsertReport upsertChildren(String projectId, List<Commit> commits, List<Issue> issues) {
+        UpsertReport report = new UpsertReport();
+        upsertUsers(issues, report);
+        upsertChildren(projectId, commits, issues, report);
+        return report;
+    }
+
+    /**
+     * Ids among the given commits, issues and their comments of rows that belong to another project, which an
+     * upsert under the given one would move to it.
+     */
+    public Set<String> findOwnedElsewhere(String projectId, List<Commit> commits, List<Issue> issues) {
+        List<String> commitIds = nonNull(commits).stream().map(Commit::getId).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        List<String> issueIds = nonNull(issues).stream().map(Issue::getId).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        List<String> commentIds = nonNull(issues).stream().flatMap(issue -> nonNull(issue.getComments()).stream())
+                .map(Comment::getId).filter(Objects::nonNull).collect(Collectors.toList());
+
+        Set<String> foreign = new HashSet<>();
+        findOwnedElsewhere("SELECT id FROM Commit WHERE project_id <> ? AND id IN", projectId, commitIds, foreign);
+        findOwnedElsewhere("SELECT id FROM Issue WHERE project_id <> ? AND id IN", projectId, issueIds, foreign);
+        findOwnedElsewhere("SELECT k.id FROM Comment k JOIN Issue i ON i.id = k.issue_id "
+                + "WHERE i.project_id <> ? AND k.id IN", projectId, commentIds, foreign);
+        return foreign;
+    }
+
+    private void findOwnedElsewhere(String sql, String projectId, List<String> ids, Set<String> foreign) {
+        for (List<String> chunk : chunks(ids)) {
+            List<Object> args = new ArrayList<>();
+            args.add(projectId);
+            args.addAll(chunk);
+            foreign.addAll(jdbcTemplate.queryForList(sql + " (" + placeholders(chunk.size()) + ")", String.class,
+                    args.toArray()));
+        }
+    }
+
+    private void upsertChildren(String projectId, List<Commit> commits, List<Issue> issues, UpsertReport report) {
+        Map<Commit, String> commitRows = new LinkedHashMap<>();
+        for (Commit commit : nonNull(commits)) {
+            commitRows.put(commit, projectId);
+        }
+        Set<String> writtenCommits = upsert(COMMITS, commitRows, Collections.emptySet(), report);
+        for (Commit commit : commitRows.keySet()) {
+            if (writtenCommits.contains(commit.getId())) {
+                searchService.index(commit);
+            }
+        }
+
+        Map<Issue, String> issueRows = new LinkedHashMap<>();
+        Map<Comment, String> commentRows = new LinkedHashMap<>();
+        for (Issue issue : nonNull(issues)) {
+            issueRows.put(issue, projectId);
+            for (Comment comment : nonNull(issue.getComments())) {
+                commentRows.put(comment, issue.getId());
+            }
+        }
+        Set<String> labelsChanged = findIssuesWithChangedLabels(issueRows.keySet());
+        Set<String> writtenIssues = upsert(ISSUES, issueRows, labelsChanged, report);
+        replaceLabels(issueRows.keySet(), writtenIssues);
+        // A MERGE of the same values leaves the version of an issue whose labels alone changed as it was
+        entityVersionService.touchIssues(labelsChanged);
+        for (Issue issue : issueRows.keySet()) {
+            if (writtenIssues.contains(issue.getId())) {
+                searchService.index(issue);
+            }
+        }
+
+        Set<String> writtenComments = upsert(COMMENTS, commentRows, Collections.emptySet(), report);
+        for (Comment comment : commentRows.keySet()) {
+            if (writtenComments.contains(comment.getId())) {
+                searchService.index(comment);
+            }
+        }
+    }
+
+    private void upsertUsers(List<Issue> issues, UpsertReport report) {
+        Map<User, String> users = new LinkedHashMap<>();
+        for (User user : collectUsers(issues).values()) {
+            users.put(user, null);
+        }
+        upsert(USERS, users, Collections.emptySet(), report);
+    }
+
+    // Distinct users referenced by the issues and their comments, keyed by id
+    public static Map<String, User> collectUsers(List<Issue> issues) {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (Issue issue : nonNull(issues)) {
+            addUser(users, issue.getAuthor());
+            addUser(users, issue.getAssignee());
+            for (Comment comment : nonNull(issue.getComments())) {
+                addUser(users, comment.getAuthor());
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Upserts the given entities (mapped to their parent id) and returns the ids that were actually written.
+     */
+    private <T> Set<String> upsert(Table<T> table, Map<T, String> entities, Set<String> forceWrite,
+                                   UpsertReport report) {
+        Map<String, Object[]> rows = new LinkedHashMap<>();
+        entities.forEach((entity, parent) -> {
+            String id = table.id.apply(entity);
+            if (id != null) {
+                rows.put(id, table.row.apply(entity, parent));
+            }
+        });
+        if (rows.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Map<String, Object[]> existing = findExisting(table, rows.keySet());
+        List<Object[]> batch = new ArrayList<>();
+        long inserted = 0;
+        long updated = 0;
+        for (Map.Entry<String, Object[]> row : rows.entrySet()) {
+            Object[] current = existing.get(row.getKey());
+            if (current == null) {
+                inserted++;
+            } else if (!Arrays.deepEquals(current, row.getValue()) || forceWrite.contains(row.getKey())) {
+                updated++;
+            } else {
+                continue;
+            }
+            batch.add(row.getValue());
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("MERGE INTO " + table.table + " (" + String.join(", ", table.columns)
+                    + ") KEY (id) VALUES (" + placeholders(table.columns.size()) + ")", batch);
+        }
+        report.add(table.name, inserted, updated, rows.size() - inserted - updated);
+        Set<String> written = batch.stream().map(row -> (String) row[0]).collect(Collectors.toSet());
+        evict(table, written, batch, existing);
+        return written;
+    }
+
+    // Evicts the written rows, and the collections of the parents they were added to or moved from
+    private <T> void evict(Table<T> table, Set<String> written, List<Object[]> batch, Map<String, Object[]> existing) {
+        entityCacheService.evict(table.type, written);
+        if (table.parentRole == null) {
+            return;
+        }
+        int parent = table.columns.size() - 1;
+        Set<String> parents = new HashSet<>();
+        for (Object[] row : batch) {
+            parents.add((String) row[parent]);
+            Object[] current = existing.get((String) row[0]);
+            if (current != null) {
+                parents.add((String) current[parent]);
+            }
+        }
+        entityCacheService.evictCollection(table.parentRole, parents);
+    }
+
+    private <T> Map<String, Object[]> findExisting(Table<T> table, Collection<String> ids) {
+        Map<String, Object[]> existing = new HashMap<>();
+        for (List<String> chunk : chunks(ids)) {
+            jdbcTemplate.query("SELECT " + String.join(", ", table.columns) + " FROM " + table.table
+                    + " WHERE id IN (" + placeholders(chunk.size()) + ")", rs -> {
+                Object[] row = new Object[table.columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                    if (row[i] instanceof Timestamp) {
+                        row[i] = ((Timestamp) row[i]).toLocalDateTime();
+                    } else if (row[i] instanceof Blob) {
+                        Blob blob = (Blob) row[i];
+                        row[i] = blob.getBytes(1, (int) blob.length());
+                    }
+                }
+                existing.put((String) row[0], row);
+            }, chunk.toArray());
+        }
+        return existing;
+    }
+
+    private Set<String> findIssuesWithChangedLabels(Collection<Issue> issues) {
+        Map<String, List<String>> stored = findLabels(issues.stream()
+                .map(Issue::getId)
+                .filter(id -> id != null)
+                .collect(Collectors.toList()));
+        Set<String> changed = new HashSet<>();
+        for (Issue issue : issues) {
+            List<String> current = stored.getOrDefault(issue.getId(), Collections.emptyList());
+            if (!sorted(current).equals(sorted(nonNull(issue.getLabels())))) {
+                changed.add(issue.getId());
+            }
+        }
+        return changed;
+    }
+
+    private Map<String, List<String>> findLabels(List<String> issueIds) {
+        Map<String, List<String>> labels = new HashMap<>();
+        for (List<String> chunk : chunks(issueIds)) {
+            jdbcTemplate.query("SELECT issue_id, labels FROM Issue_labels WHERE issue_id IN ("
+                    + placeholders(chunk.size()) + ")", rs -> {
+                labels.computeIfAbsent(rs.getString(1), id -> new ArrayList<>()).add(rs.getString(2));
+            }, chunk.toArray());
+        }
+        return labels;
+    }
+
+    private void replaceLabels(Collection<Issue> issues, Set<String> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Issue issue : issues) {
+            if (written.contains(issue.getId())) {
+                deletes.add(new Object[]{issue.getId()});
+                for (String label : nonNull(issue.getLabels())) {
+                    inserts.add(new Object[]{issue.getId(), label});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM Issue_labels WHERE issue_id = ?", deletes);
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO Issue_labels (issue_id, labels) VALUES (?, ?)", inserts);
+        }
+        entityCacheService.evictCollection(EntityCacheService.ISSUE_LABELS, written);
+    }
+
+    private static void addUser(Map<String, User> users, User user) {
+        if (user != null && user.getId() != null) {
+            users.put(user.getId(), user);
+        }
+    }
+
+    // Timestamps are stored as UTC wall-clock time (hibernate.jdbc.time_zone)
+    static LocalDateTime utc(Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static String userId(User user) {
+        return user == null ? null : user.getId();
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static List<List<String>> chunks(Collection<String> ids) {
+        List<String> all = new ArrayList<>(ids);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += IN_CHUNK_SIZE) {
+            chunks.add(all.subList(i, Math.min(i + IN_CHUNK_SIZE, all.size())));
+        }
+        return chunks;
+    }
+
+    private static final class Table<T> {
+
+        final String name;
+        final String table;
+        final Class<T> type;
+        // Collection of the parent, whose id is the last column, holding the rows
+        final String parentRole;
+        final List<String> columns;
+        final Function<T, String> id;
+        final BiFunction<T, String, Object[]> row;
+
+        Table(String name, String table, Class<T> type, String parentRole, List<String> columns,
+              Function<T, String> id, BiFunction<T, String, Object[]> row) {
+            this.name = name;
+            this.table = table;
+            this.type = type;
+            this.parentRole = parentRole;
+            this.columns = columns;
+            this.id = id;
+            this.row = row;
+        }
+    }
+}
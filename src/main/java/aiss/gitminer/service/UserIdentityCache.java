@@ -0,0 +1,65 @@
+package aiss.gitminer.service;
+
+import aiss.gitminer.model.Comment;
+import aiss.gitminer.model.Issue;
+import aiss.gitminer.model.Project;
+import aiss.gitminer.model.User;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Identity map of users for a single request or import. Every reference to the same {@code User.id} is
+ * replaced by one attached instance, so each distinct user is merged (and written) at most once, and later
+ * chunks of the same import only take a reference to it instead of loading or merging it again.
+ */
+public class UserIdentityCache {
+
+    private final EntityManager entityManager;
+    private final Set<String> written = new HashSet<>();
+    private final Map<String, User> attached = new HashMap<>();
+
+    public UserIdentityCache(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public void resolve(Project project) {
+        if (project.getIssues() != null) {
+            for (Issue issue : project.getIssues()) {
+                resolve(issue);
+            }
+        }
+    }
+
+    public void resolve(Issue issue) {
+        issue.setAuthor(resolve(issue.getAuthor()));
+        issue.setAssignee(resolve(issue.getAssignee()));
+        if (issue.getComments() != null) {
+            for (Comment comment : issue.getComments()) {
+                comment.setAuthor(resolve(comment.getAuthor()));
+            }
+        }
+    }
+
+    public User resolve(User user) {
+        if (user == null || user.getId() == null) {
+            return user;
+        }
+        User resolved = attached.get(user.getId());
+        if (resolved == null) {
+            resolved = written.add(user.getId())
+                    ? entityManager.merge(user)
+                    : entityManager.getReference(User.class, user.getId());
+            attached.put(user.getId(), resolved);
+        }
+        return resolved;
+    }
+
+    // Must be called whenever the persistence context is cleared, the attached instances are detached by then
+    public void clear() {
+        attached.clear();
+    }
+}
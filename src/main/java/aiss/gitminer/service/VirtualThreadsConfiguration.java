@@ -0,0 +1,66 @@
+package aiss.gitminer.service;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Handles each request on a virtual thread of its own instead of one of Tomcat's pool when
+ * {@code gitminer.threads.mode} is {@code virtual}, so requests blocked on a slow client or on the database
+ * hold no thread the others queue for. As threads no longer bound the requests asking for a connection, the
+ * requests are then limited (see LimitedDataSource) to {@code gitminer.datasource.permits} connections at once.
+ * Virtual threads need a Java 21 runtime, which the code, compiled for Java 17, reaches through reflection.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gitminer.threads.mode", havingValue = "virtual")
+public class VirtualThreadsConfiguration {
+
+    private static final String REQUEST_THREADS = "http-virtual-";
+
+    // Connections of the pool the requests leave to the write-behind flush, import jobs and snapshots
+    private static final int RESERVED_CONNECTIONS = 2;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreads() {
+        ThreadFactory threads = virtualThreadFactory(REQUEST_THREADS);
+        Executor executor = task -> threads.newThread(task).start();
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    // Static, as post-processors are created before the other beans of their configuration. With as many permits as
+    // connections in the pool, a burst of requests would only queue in Hikari instead, and starve the background work
+    @Bean
+    public static BeanPostProcessor limitedDataSource(Environment environment) {
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int permits = environment.getProperty("gitminer.datasource.permits", Integer.class,
+                Math.max(1, poolSize - RESERVED_CONNECTIONS));
+        long acquireTimeout = environment.getProperty("gitminer.datasource.acquire-timeout", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource && !(bean instanceof LimitedDataSource)
+                        ? new LimitedDataSource((DataSource) bean, permits, acquireTimeout,
+                        thread -> thread.getName().startsWith(REQUEST_THREADS)) : bean;
+            }
+        };
+    }
+
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, prefix, 0L);
+            return (ThreadFactory) builder.getMethod("factory").invoke(virtual);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("gitminer.threads.mode=virtual needs Java 21, running on Java "
+                    + Runtime.version(), e);
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- Runs before Hibernate creates the tables, whose version columns draw from it (see EntityVersionService)
+CREATE SEQUENCE IF NOT EXISTS entity_version;
@@ -0,0 +1,74 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "gitminer.import.chunk-size=5",
+        "spring.datasource.url=jdbc:h2:mem:bulk-import"
+})
+@AutoConfigureMockMvc
+class BulkImportTests {
+
+    private static final int PROJECTS = 12;
+    private static final int COMMITS = 3;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM Commit");
+        jdbcTemplate.execute("DELETE FROM Project");
+    }
+
+    @Test
+    void importsValidRecordsInChunksAndReportsTheRest() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int p = 0; p < PROJECTS; p++) {
+            ndjson.append(project("p" + p, "project")).append('\n');
+        }
+        ndjson.append(project("invalid", "")).append('\n');
+
+        mvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(ndjson.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.projects").value(PROJECTS))
+                .andExpect(jsonPath("$.entities").value(PROJECTS * (1 + COMMITS)))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0]").value("record 13: The name of the project cannot be empty"));
+
+        assertEquals(PROJECTS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Project", Long.class));
+        assertEquals(PROJECTS * COMMITS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Commit", Long.class));
+    }
+
+    @Test
+    void malformedRecordsAreBadRequests() throws Exception {
+        mvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson")
+                        .content(project("p0", "project") + "\n{\"id\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    static String project(String id, String name) {
+        StringBuilder commits = new StringBuilder();
+        for (int c = 0; c < COMMITS; c++) {
+            commits.append(c == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-c").append(c)
+                    .append("\",\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author\",")
+                    .append("\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}");
+        }
+        return "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"web_url\":\"url\",\"commits\":[" + commits + "]}";
+    }
+}
@@ -0,0 +1,99 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:compressed-text"
+})
+@AutoConfigureMockMvc
+class CompressedTextTests {
+
+    // Random letters deflate to about three quarters of their size, still well above the 1 MB of a VARBINARY
+    private static final int LENGTH = 2_000_000;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+    }
+
+    @Test
+    void textsLargerThanAVarbinaryRoundTrip() throws Exception {
+        String text = randomText(LENGTH);
+        String project = project(text);
+
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content(project))
+                .andExpect(status().isCreated());
+        assertTrue(jdbcTemplate.queryForObject("SELECT OCTET_LENGTH(message) FROM Commit WHERE id = 'c1'",
+                Long.class) > 1_000_000);
+
+        mvc.perform(get("/gitminer/commits/c1")).andExpect(jsonPath("$.message").value(text));
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.description").value(text));
+        mvc.perform(get("/gitminer/comments/k1")).andExpect(jsonPath("$.body").value(text));
+
+        // Stored and incoming texts compare equal
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content(project))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits.unchanged").value(1))
+                .andExpect(jsonPath("$.issues.unchanged").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+    }
+
+    @Test
+    void listsLeaveLargeTextsOutUnlessAskedFor() throws Exception {
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content(project("short text")))
+                .andExpect(status().isCreated());
+
+        mvc.perform(get("/gitminer/commits"))
+                .andExpect(jsonPath("$[0].title").value("commit"))
+                .andExpect(jsonPath("$[0].message").doesNotExist());
+        mvc.perform(get("/gitminer/commits").param("fields", "message"))
+                .andExpect(jsonPath("$[0].message").value("short text"));
+        mvc.perform(get("/gitminer/issues"))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+        mvc.perform(get("/gitminer/comments"))
+                .andExpect(jsonPath("$[0].body").doesNotExist());
+        mvc.perform(get("/gitminer/commits/c1")).andExpect(jsonPath("$.message").value("short text"));
+    }
+
+    private static String project(String text) {
+        return "{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[{\"id\":\"c1\","
+                + "\"title\":\"commit\",\"message\":\"" + text + "\",\"author_name\":\"author\","
+                + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}],\"issues\":[{\"id\":\"i1\","
+                + "\"title\":\"issue\",\"description\":\"" + text + "\",\"state\":\"opened\","
+                + "\"comments\":[{\"id\":\"k1\",\"body\":\"" + text + "\","
+                + "\"created_at\":\"2023-01-02T00:00:00Z\"}]}]}";
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:concurrent-write"
+})
+@AutoConfigureMockMvc
+class ConcurrentWriteTests {
+
+    private static final int THREADS = 8;
+    private static final int VOTES = 25;
+    private static final String UPDATE = "{\"state\":\"opened\",\"labels\":[\"bug\"],\"votes\":%d}";
+
+    @Autowired
+    MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[{\"id\":\"c1\","
+                                + "\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author\","
+                                + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}],"
+                                + "\"issues\":[{\"id\":\"i1\",\"title\":\"issue\",\"state\":\"opened\","
+                                + "\"labels\":[\"bug\"],\"votes\":0}]}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws Exception {
+        String etag = etag("/gitminer/issues/i1");
+        List<Integer> statuses = concurrently(() -> {
+            for (int i = 0; i < VOTES; i++) {
+                mvc.perform(post("/gitminer/issues/i1/votes:increment")).andExpect(status().isNoContent());
+            }
+            return 204;
+        });
+        assertEquals(THREADS, statuses.size());
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.votes").value(THREADS * VOTES));
+        mvc.perform(get("/gitminer/issues/i1").header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isOk());
+
+        mvc.perform(post("/gitminer/issues/missing/votes:increment")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void closingIsIdempotent() throws Exception {
+        mvc.perform(post("/gitminer/issues/i1:close")).andExpect(status().isNoContent());
+        String closedAt = mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(jsonPath("$.state").value("closed"))
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"closed_at\":\"([^\"]+)\".*", "$1");
+        String etag = etag("/gitminer/issues/i1");
+
+        mvc.perform(post("/gitminer/issues/i1:close")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.closed_at").value(closedAt));
+        mvc.perform(get("/gitminer/issues/i1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mvc.perform(post("/gitminer/issues/missing:close")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void updatesApplyToTheVersionRead() throws Exception {
+        String etag = etag("/gitminer/issues/i1");
+        mvc.perform(put("/gitminer/issues/i1").header(HttpHeaders.IF_MATCH, etag)
+                        .contentType("application/json").content(String.format(UPDATE, 1)))
+                .andExpect(status().isNoContent());
+        mvc.perform(put("/gitminer/issues/i1").header(HttpHeaders.IF_MATCH, etag)
+                        .contentType("application/json").content(String.format(UPDATE, 2)))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.votes").value(1));
+
+        mvc.perform(put("/gitminer/issues/i1").header(HttpHeaders.IF_MATCH, "\"0-1\", *")
+                        .contentType("application/json").content(String.format(UPDATE, 3)))
+                .andExpect(status().isNoContent());
+        mvc.perform(put("/gitminer/issues/missing").header(HttpHeaders.IF_MATCH, etag)
+                        .contentType("application/json").content(String.format(UPDATE, 3)))
+                .andExpect(status().isNotFound());
+
+        String commit = etag("/gitminer/commits/c1");
+        mvc.perform(post("/gitminer/issues/i1/votes:increment")).andExpect(status().isNoContent());
+        mvc.perform(put("/gitminer/commits/c1").header(HttpHeaders.IF_MATCH, commit)
+                        .contentType("application/json").content("{\"title\":\"changed\",\"message\":\"message\","
+                                + "\"author_name\":\"author\",\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(put("/gitminer/projects/p1").header(HttpHeaders.IF_MATCH, "\"0-1\"")
+                        .contentType("application/json").content("{\"name\":\"changed\",\"web_url\":\"url\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updatesWithoutIfMatchApplyUnconditionally() throws Exception {
+        mvc.perform(put("/gitminer/issues/i1").contentType("application/json").content(String.format(UPDATE, 1)))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.votes").value(1));
+
+        // Without a state the issue is neither closed nor a server error
+        mvc.perform(put("/gitminer/issues/i1").contentType("application/json").content("{\"labels\":[],\"votes\":2}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(jsonPath("$.votes").value(2))
+                .andExpect(jsonPath("$.closed_at").doesNotExist());
+    }
+
+    @Test
+    void concurrentUpdatesOfTheSameVersionApplyOnce() throws Exception {
+        String etag = etag("/gitminer/issues/i1");
+        List<Integer> statuses = concurrently(() -> mvc.perform(put("/gitminer/issues/i1")
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType("application/json").content(String.format(UPDATE, 1)))
+                .andReturn().getResponse().getStatus());
+        assertEquals(1, statuses.stream().filter(status -> status == 204).count());
+        assertEquals(THREADS - 1, statuses.stream().filter(status -> status == 412).count());
+    }
+
+    private List<Integer> concurrently(Callable<Integer> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<Integer> statuses = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                statuses.add(future.get());
+            }
+            return statuses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String etag(String uri) throws Exception {
+        return mvc.perform(get(uri)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,144 @@
+package aiss.gitminer.gitminer;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:conditional-get"
+})
+@AutoConfigureMockMvc
+class ConditionalGetTests {
+
+    private static final String PROJECT = "{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\","
+            + "\"commits\":[{\"id\":\"c1\",\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author\","
+            + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}],"
+            + "\"issues\":[{\"id\":\"i1\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[%s],"
+            + "\"updated_at\":\"2023-01-02T00:00:00Z\",\"author\":{\"id\":\"u1\",\"username\":\"%s\"},"
+            + "\"comments\":[{\"id\":\"k1\",\"body\":\"body\",\"author\":{\"id\":\"u2\",\"username\":\"commenter\"},"
+            + "\"created_at\":\"2023-01-01T00:00:00Z\",\"updated_at\":\"2023-01-03T00:00:00Z\"},"
+            + "{\"id\":\"k2\",\"body\":\"body\",\"created_at\":\"2023-01-01T00:00:00Z\"}]}]}";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content(String.format(PROJECT, "\"bug\"", "author")))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void unchangedEntitiesAreNotLoaded() throws Exception {
+        String[] uris = {"/gitminer/projects/p1", "/gitminer/commits/c1", "/gitminer/issues/i1",
+                "/gitminer/issues/i1/comments", "/gitminer/comments/k1", "/gitminer/projects", "/gitminer/commits",
+                "/gitminer/issues", "/gitminer/comments"};
+        String[] etags = new String[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            etags[i] = mvc.perform(get(uris[i])).andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotNull(etags[i], uris[i]);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        for (int i = 0; i < uris.length; i++) {
+            mvc.perform(get(uris[i]).header(HttpHeaders.IF_NONE_MATCH, etags[i]))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etags[i]))
+                    .andExpect(content().string(""));
+        }
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount());
+
+        mvc.perform(get("/gitminer/issues/i1").header(HttpHeaders.IF_NONE_MATCH, "\"0-1\""))
+                .andExpect(status().isOk());
+        mvc.perform(get("/gitminer/issues/missing").header(HttpHeaders.IF_NONE_MATCH, "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void issuesAreLastModifiedWithTheirComments() throws Exception {
+        mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Tue, 03 Jan 2023 00:00:00 GMT"));
+        mvc.perform(get("/gitminer/comments/k2"))
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED));
+        mvc.perform(get("/gitminer/issues/i1").header(HttpHeaders.IF_MODIFIED_SINCE, "Tue, 03 Jan 2023 00:00:00 GMT"))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/gitminer/issues/i1").header(HttpHeaders.IF_MODIFIED_SINCE, "Mon, 02 Jan 2023 00:00:00 GMT"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void everyWriteToTheGraphChangesTheEtag() throws Exception {
+        String project = etag("/gitminer/projects/p1");
+        String issue = etag("/gitminer/issues/i1");
+
+        // Labels alone, through JPA and through the JDBC upsert
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content(String.format(PROJECT, "\"feature\"", "author")))
+                .andExpect(status().isCreated());
+        issue = assertChanged("/gitminer/issues/i1", issue);
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content(String.format(PROJECT, "\"bug\"", "author")))
+                .andExpect(status().isOk());
+        issue = assertChanged("/gitminer/issues/i1", issue);
+
+        // A user the issue refers to
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content(String.format(PROJECT, "\"bug\"", "renamed")))
+                .andExpect(status().isOk());
+        issue = assertChanged("/gitminer/issues/i1", issue);
+
+        mvc.perform(delete("/gitminer/comments/k2")).andExpect(status().isNoContent());
+        assertChanged("/gitminer/issues/i1", issue);
+
+        String commits = etag("/gitminer/commits");
+        String commit = etag("/gitminer/commits/c1");
+        mvc.perform(put("/gitminer/commits/c1").contentType("application/json")
+                        .content("{\"title\":\"changed\",\"message\":\"message\",\"author_name\":\"author\","
+                                + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}"))
+                .andExpect(status().isNoContent());
+        assertChanged("/gitminer/commits", commits);
+        assertChanged("/gitminer/commits/c1", commit);
+        assertChanged("/gitminer/projects/p1", project);
+    }
+
+    private String etag(String uri) throws Exception {
+        return mvc.perform(get(uri)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private String assertChanged(String uri, String previous) throws Exception {
+        mvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, previous)).andExpect(status().isOk());
+        String etag = etag(uri);
+        assertNotEquals(previous, etag, uri);
+        return etag;
+    }
+}
@@ -0,0 +1,81 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:date-range"
+})
+@AutoConfigureMockMvc
+class DateRangeTests {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert")
+                        .contentType("application/json").content(project()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void filtersByHalfOpenRangesAndKeepsTheWireFormat() throws Exception {
+        mvc.perform(get("/gitminer/commits").param("since", "2023-01-03").param("until", "2023-01-05"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains("c3", "c4")))
+                .andExpect(jsonPath("$[0].authored_date").value("2023-01-03T08:00:00Z"));
+        mvc.perform(get("/gitminer/issues").param("since", "2023-01-08T00:00:00Z").param("order", "-createdAt"))
+                .andExpect(jsonPath("$[*].id", contains("i9", "i8")));
+        mvc.perform(get("/gitminer/comments").param("until", "2023-01-03").param("cursor", ""))
+                .andExpect(jsonPath("$[*].id", contains("cm1", "cm2")));
+        mvc.perform(get("/gitminer/comments").param("until", "yesterday")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rangesAreIndexScans() {
+        assertTrue(plan("SELECT id FROM Commit WHERE authored_date >= ? AND authored_date < ?")
+                .contains("COMMIT_AUTHORED_DATE_IDX"));
+        assertTrue(plan("SELECT id FROM Issue WHERE created_at >= ?").contains("ISSUE_CREATED_AT_IDX"));
+        assertTrue(plan("SELECT id FROM Comment WHERE created_at < ?").contains("COMMENT_CREATED_AT_IDX"));
+    }
+
+    private String plan(String query) {
+        String bound = query.replace("?", "TIMESTAMP '2023-01-03 00:00:00'");
+        return jdbcTemplate.queryForObject("EXPLAIN " + bound, String.class);
+    }
+
+    // One commit, issue and comment per day of 2023-01-01..09, with commit dates in another offset
+    private static String project() {
+        StringBuilder sb = new StringBuilder("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[");
+        for (int d = 1; d <= 9; d++) {
+            sb.append(d == 1 ? "" : ",").append("{\"id\":\"c").append(d).append("\",\"title\":\"commit\",")
+                    .append("\"author_name\":\"a\",\"authored_date\":\"2023-01-0").append(d)
+                    .append("T10:00:00.000+02:00\",\"web_url\":\"url\"}");
+        }
+        sb.append("],\"issues\":[");
+        for (int d = 1; d <= 9; d++) {
+            sb.append(d == 1 ? "" : ",").append("{\"id\":\"i").append(d)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\",\"created_at\":\"2023-01-0").append(d)
+                    .append("T00:00:00Z\",\"comments\":[{\"id\":\"cm").append(d)
+                    .append("\",\"body\":\"body\",\"created_at\":\"2023-01-0").append(d).append("T12:00:00Z\"}]}");
+        }
+        return sb.append("]}").toString();
+    }
+}
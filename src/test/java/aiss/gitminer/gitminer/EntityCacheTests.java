@@ -0,0 +1,146 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        // Reads reach the entities, and not serialized responses
+        "gitminer.response-cache.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:entity-cache"
+})
+@AutoConfigureMockMvc
+class EntityCacheTests {
+
+    private static final int RECORDS = 20;
+    private static final int ROUNDS = 10;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+        StringBuilder commits = new StringBuilder();
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            String separator = i == 0 ? "" : ",";
+            commits.append(separator).append("{\"id\":\"c").append(i).append("\",\"title\":\"commit\",")
+                    .append("\"message\":\"message\",\"author_name\":\"author\",")
+                    .append("\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}");
+            issues.append(separator).append("{\"id\":\"i").append(i).append("\",\"title\":\"issue\",")
+                    .append("\"state\":\"opened\",\"labels\":[\"bug\"],")
+                    .append("\"author\":{\"id\":\"u").append(i % 3).append("\",\"username\":\"user\"},")
+                    .append("\"comments\":[{\"id\":\"k").append(i).append("\",\"body\":\"body\",")
+                    .append("\"created_at\":\"2023-01-01T00:00:00Z\"}]}");
+        }
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[" + commits
+                                + "],\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void hotRecordsAreServedWithoutTheDatabase() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        readAll();
+        assertTrue(statistics.getPrepareStatementCount() >= 3 * RECORDS + 1);
+        assertTrue(statistics.getSecondLevelCachePutCount() >= 3 * RECORDS + 1);
+
+        statistics.clear();
+        for (int round = 0; round < ROUNDS; round++) {
+            readAll();
+        }
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getSecondLevelCacheMissCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= ROUNDS * (3 * RECORDS + 1));
+
+        JsonNode regions = objectMapper.readTree(mvc.perform(get("/gitminer/cache"))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        for (JsonNode region : regions) {
+            if (region.get("region").asText().equals("Commit")) {
+                assertEquals(RECORDS, region.get("size").asLong());
+                assertTrue(region.get("hits").asLong() >= ROUNDS * RECORDS);
+            }
+        }
+    }
+
+    @Test
+    void writesEvictOnlyWhatTheyChange() throws Exception {
+        readAll();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        mvc.perform(put("/gitminer/commits/c0").contentType("application/json")
+                        .content("{\"title\":\"changed\",\"message\":\"message\",\"author_name\":\"author\","
+                                + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/commits/c0")).andExpect(jsonPath("$.title").value("changed"));
+
+        // Upserted with JDBC, around Hibernate
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"renamed\",\"web_url\":\"url\",\"issues\":[{\"id\":\"i1\","
+                                + "\"title\":\"upserted\",\"state\":\"closed\",\"labels\":[\"feature\"],"
+                                + "\"comments\":[{\"id\":\"new\",\"body\":\"body\",\"created_at\":\"2023-01-02T00:00:00Z\"}]}]}"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(jsonPath("$.name").value("renamed"));
+        mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(jsonPath("$.title").value("upserted"))
+                .andExpect(jsonPath("$.labels[0]").value("feature"))
+                .andExpect(jsonPath("$.comments.length()").value(2));
+
+        mvc.perform(delete("/gitminer/comments/k2")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/issues/i2")).andExpect(jsonPath("$.comments.length()").value(0));
+        mvc.perform(delete("/gitminer/commits/c3")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(jsonPath("$.commits.length()").value(RECORDS - 1));
+
+        // The other records are still cached
+        statistics.clear();
+        mvc.perform(get("/gitminer/commits/c4")).andExpect(status().isOk());
+        mvc.perform(get("/gitminer/issues/i4")).andExpect(status().isOk());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        mvc.perform(delete("/gitminer/projects/p1")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/commits/c4")).andExpect(status().isNotFound());
+        mvc.perform(get("/gitminer/issues/i4")).andExpect(status().isNotFound());
+        mvc.perform(get("/gitminer/comments/k4")).andExpect(status().isNotFound());
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(status().isNotFound());
+    }
+
+    private void readAll() throws Exception {
+        for (int i = 0; i < RECORDS; i++) {
+            mvc.perform(get("/gitminer/commits/c" + i)).andExpect(status().isOk());
+            mvc.perform(get("/gitminer/issues/i" + i)).andExpect(status().isOk());
+            mvc.perform(get("/gitminer/comments/k" + i)).andExpect(status().isOk());
+        }
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,88 @@
+package aiss.gitminer.gitminer;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:fetch-plan"
+})
+@AutoConfigureMockMvc
+class FetchPlanTests {
+
+    private static final int ISSUES = 60;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert")
+                        .contentType("application/json").content(project()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void issuePagesTakeTheSameNumberOfStatementsWhateverTheirSize() throws Exception {
+        long small = statements("/gitminer/issues?size=5");
+        long large = statements("/gitminer/issues?size=" + ISSUES);
+        assertEquals(small, large);
+        // page, count, labels, comments and comment authors
+        assertTrue(large <= 5, large + " statements");
+
+        assertEquals(statements("/gitminer/issues?size=5&state=opened"),
+                statements("/gitminer/issues?size=" + ISSUES + "&state=opened"));
+        assertEquals(statements("/gitminer/issues?size=5&cursor="),
+                statements("/gitminer/issues?size=" + ISSUES + "&cursor="));
+    }
+
+    @Test
+    void commentPagesTakeTheSameNumberOfStatementsWhateverTheirSize() throws Exception {
+        assertEquals(statements("/gitminer/comments?size=5"), statements("/gitminer/comments?size=" + ISSUES));
+    }
+
+    private long statements(String url) throws Exception {
+        statistics.clear();
+        mvc.perform(get(url)).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Every issue has its own author, assignee, labels and commenter, so nothing is shared between rows
+    private static String project() {
+        StringBuilder sb = new StringBuilder("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":[");
+        for (int i = 0; i < ISSUES; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":\"i").append(i)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[\"bug\",\"l").append(i)
+                    .append("\"],\"author\":").append(user("a" + i)).append(",\"assignee\":").append(user("s" + i))
+                    .append(",\"comments\":[{\"id\":\"c").append(i).append("\",\"body\":\"body\",\"author\":")
+                    .append(user("c" + i)).append("}]}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String user(String id) {
+        return "{\"id\":\"" + id + "\",\"username\":\"" + id + "\"}";
+    }
+}
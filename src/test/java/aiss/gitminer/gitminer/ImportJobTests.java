@@ -0,0 +1,163 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.service.UpsertService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:import-job;LOCK_TIMEOUT=30000"
+})
+@AutoConfigureMockMvc
+class ImportJobTests {
+
+    private static final int ISSUES = 500;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @SpyBean
+    UpsertService upsertService;
+
+    @Test
+    void succeededJobsReportWhatTheyWrote() throws Exception {
+        JsonNode job = finished(submit(project("ok", "project")));
+        assertEquals("SUCCEEDED", job.get("status").asText());
+        // The project, its issue and the issue author
+        assertEquals(3, job.get("entities_written").asLong());
+        assertEquals(1, job.get("written").get("issues").get("inserted").asLong());
+
+        mvc.perform(get("/gitminer/jobs/missing")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void runningJobsReportTheRowsNotYetCommitted() throws Exception {
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content(large("large", 1, "body")))
+                .andExpect(status().isCreated());
+
+        String location;
+        JsonNode job;
+        // Locks a comment the import changes, so that it waits at the comments, the last rows it writes
+        try (Connection lock = dataSource.getConnection()) {
+            lock.setAutoCommit(false);
+            lock.createStatement().executeQuery("SELECT * FROM Comment WHERE id = 'large-i0-k' FOR UPDATE");
+            location = submit(large("large", ISSUES, "changed"));
+            job = poll(location);
+            for (int attempt = 0; attempt < 200 && job.get("entities_uncommitted").asLong() < ISSUES * 2 - 2;
+                 attempt++) {
+                Thread.sleep(50);
+                job = poll(location);
+            }
+            assertEquals("RUNNING", job.get("status").asText());
+            // The commits and issues less the first of each, unchanged, and no comment yet
+            assertEquals(ISSUES * 2 - 2, job.get("entities_uncommitted").asLong());
+            assertEquals(0, job.get("entities_written").asLong());
+            lock.rollback();
+        }
+
+        job = finished(location);
+        assertEquals("SUCCEEDED", job.get("status").asText());
+        assertEquals(ISSUES * 3 - 2, job.get("entities_written").asLong());
+        assertEquals(0, job.get("entities_uncommitted").asLong());
+    }
+
+    @Test
+    void rolledBackJobsReportNothingWritten() throws Exception {
+        // The users are written before the project, whose name is longer than its column
+        JsonNode job = finished(submit(project("too-long", "x".repeat(300))));
+        assertEquals("FAILED", job.get("status").asText());
+        assertEquals(0, job.get("entities_written").asLong());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Issue WHERE project_id = 'too-long'",
+                Long.class));
+    }
+
+    @Test
+    void errorsFailTheJob() throws Exception {
+        doThrow(new StackOverflowError()).when(upsertService)
+                .upsertProject(argThat(project -> project != null && "overflow".equals(project.getId())), any());
+        JsonNode job = finished(submit(project("overflow", "project")));
+        assertEquals("FAILED", job.get("status").asText());
+        assertEquals(StackOverflowError.class.getName(), job.get("failure").asText());
+
+        // The pool replaces the worker the error ended
+        assertEquals("SUCCEEDED", finished(submit(project("after", "project"))).get("status").asText());
+    }
+
+    private String submit(String project) throws Exception {
+        return mvc.perform(post("/gitminer/projects").param("async", "true")
+                        .contentType("application/json").content(project))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.status").exists())
+                .andReturn().getResponse().getHeader("Location");
+    }
+
+    private JsonNode poll(String location) throws Exception {
+        return objectMapper.readTree(mvc.perform(get(location)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private JsonNode finished(String location) throws Exception {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            JsonNode job = poll(location);
+            String status = job.get("status").asText();
+            if (!status.equals("QUEUED") && !status.equals("RUNNING")) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Job " + location + " did not finish");
+    }
+
+    // A project of commits and issues with a comment each, the first issue's comment having the given body
+    private static String large(String id, int issues, String body) {
+        StringBuilder commits = new StringBuilder();
+        StringBuilder issueRows = new StringBuilder();
+        for (int i = 0; i < issues; i++) {
+            commits.append(i == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-c").append(i)
+                    .append("\",\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author\",")
+                    .append("\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}");
+            issueRows.append(i == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-i").append(i)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\",\"comments\":[{\"id\":\"").append(id)
+                    .append("-i").append(i).append("-k\",\"body\":\"").append(i == 0 ? body : "body")
+                    .append("\",\"created_at\":\"2023-01-02T00:00:00Z\"}]}");
+        }
+        return "{\"id\":\"" + id + "\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[" + commits
+                + "],\"issues\":[" + issueRows + "]}";
+    }
+
+    private static String project(String id, String name) {
+        return "{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"web_url\":\"url\",\"issues\":[{\"id\":\"" + id
+                + "-i1\",\"title\":\"issue\",\"state\":\"opened\",\"author\":{\"id\":\"" + id
+                + "-u1\",\"username\":\"user\"}}]}";
+    }
+}
@@ -0,0 +1,105 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:index-plan"
+})
+@AutoConfigureMockMvc
+class IndexPlanTests {
+
+    private static final int ROWS = 5000;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Project", Long.class) > 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO GMUser (id, username) SELECT 'u' || X, 'user' FROM SYSTEM_RANGE(1, 50)");
+        jdbcTemplate.update("INSERT INTO Project (id, name, web_url) SELECT 'p' || X, 'n' || MOD(X, 97), 'url' "
+                + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        jdbcTemplate.update("INSERT INTO Commit (id, title, author_name, authored_date, web_url, project_id) "
+                + "SELECT 'c' || X, 'commit', 'a' || MOD(X, 97), DATEADD(MINUTE, X, TIMESTAMP '2023-01-01 00:00:00'), "
+                + "'url', 'p1' FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        jdbcTemplate.update("INSERT INTO Issue (id, title, state, created_at, author_id, project_id) "
+                + "SELECT 'i' || X, 'issue', CASE MOD(X, 3) WHEN 0 THEN 'closed' ELSE 'opened' END, "
+                + "DATEADD(MINUTE, X, TIMESTAMP '2023-01-01 00:00:00'), 'u' || (MOD(X, 50) + 1), 'p1' "
+                + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        jdbcTemplate.update("INSERT INTO Comment (id, created_at, author_id, issue_id) "
+                + "SELECT 'cm' || X, DATEADD(MINUTE, X, TIMESTAMP '2023-01-01 00:00:00'), 'u' || (MOD(X, 50) + 1), "
+                + "'i' || X FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void filtersUseTheirIndex() {
+        assertUses("COMMIT_AUTHOR_NAME_IDX", "SELECT id FROM Commit WHERE author_name = 'a1' ORDER BY id");
+        assertUses("ISSUE_STATE_AUTHOR_IDX",
+                "SELECT id FROM Issue WHERE state = 'opened' AND author_id = 'u1' ORDER BY id");
+        assertUses("ISSUE_STATE_AUTHOR_IDX", "SELECT id FROM Issue WHERE state = 'opened' ORDER BY id");
+        assertUses("ISSUE_AUTHOR_IDX", "SELECT id FROM Issue WHERE author_id = 'u1' ORDER BY id");
+        assertUses("COMMENT_AUTHOR_IDX", "SELECT id FROM Comment WHERE author_id = 'u1' ORDER BY id");
+        assertUses("PROJECT_NAME_IDX", "SELECT id FROM Project WHERE name = 'n1' ORDER BY id");
+    }
+
+    @Test
+    void sortKeysAreReadInIndexOrder() {
+        String[][] sorts = {
+                {"Commit", "author_name", "COMMIT_AUTHOR_NAME_IDX"},
+                {"Commit", "authored_date", "COMMIT_AUTHORED_DATE_IDX"},
+                {"Issue", "created_at", "ISSUE_CREATED_AT_IDX"},
+                {"Issue", "author_id", "ISSUE_AUTHOR_IDX"},
+                {"Comment", "created_at", "COMMENT_CREATED_AT_IDX"},
+                {"Comment", "author_id", "COMMENT_AUTHOR_IDX"},
+                {"Project", "name", "PROJECT_NAME_IDX"}
+        };
+        for (String[] sort : sorts) {
+            String plan = assertUses(sort[2], "SELECT id FROM " + sort[0] + " ORDER BY " + sort[1] + ", id "
+                    + "FETCH FIRST 10 ROWS ONLY");
+            assertTrue(plan.contains("index sorted"), plan);
+        }
+    }
+
+    @Test
+    void ordersOnlyByIndexedKeys() throws Exception {
+        mvc.perform(get("/gitminer/issues").param("order", "title")).andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/projects").param("order", "webUrl")).andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/comments").param("order", "createdAt,-createdAt"))
+                .andExpect(status().isBadRequest());
+        // A cursor position holds a single sort key
+        mvc.perform(get("/gitminer/commits").param("order", "authorName,-authoredDate").param("cursor", ""))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(get("/gitminer/commits").param("order", "authorName,-authoredDate").param("size", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains("c4947", "c4850", "c4753")));
+        mvc.perform(get("/gitminer/issues").param("order", "author.id,-createdAt").param("state", "closed")
+                        .param("fields", "id").param("size", "2"))
+                .andExpect(jsonPath("$[*].id", contains("i4950", "i4800")));
+    }
+
+    private String assertUses(String index, String query) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+        assertTrue(plan.contains("PUBLIC." + index), plan);
+        return plan;
+    }
+}
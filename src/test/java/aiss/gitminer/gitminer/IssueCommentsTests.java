@@ -0,0 +1,103 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:issue-comments"
+})
+@AutoConfigureMockMvc
+class IssueCommentsTests {
+
+    private static final int COMMENTS = 25;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    // Comments are inserted newest first, so creation order is the reverse of insertion order
+    @BeforeEach
+    void setUp() throws Exception {
+        StringBuilder comments = new StringBuilder();
+        for (int i = 0; i < COMMENTS; i++) {
+            comments.append(i == 0 ? "" : ",").append("{\"id\":\"c").append(i).append("\",\"body\":\"b\",")
+                    .append("\"created_at\":\"2023-01-01T00:00:").append(String.format("%02d", COMMENTS - i))
+                    .append("Z\"}");
+        }
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":["
+                                + "{\"id\":\"i1\",\"title\":\"t\",\"comments\":[" + comments + "]},"
+                                + "{\"id\":\"i2\",\"title\":\"t\",\"comments\":[{\"id\":\"other\",\"body\":\"b\"}]}]}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void pagesThroughTheCommentsInCreationOrderWithoutLoadingTheIssue() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<String> ids = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            MockHttpServletResponse response = mvc.perform(get("/gitminer/issues/i1/comments")
+                            .param("size", "10").param("cursor", cursor))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            for (JsonNode comment : objectMapper.readTree(response.getContentAsString())) {
+                ids.add(comment.get("id").asText());
+            }
+            cursor = response.getHeader("X-Next-Cursor");
+        }
+        assertEquals(COMMENTS, ids.size());
+        for (int i = 0; i < COMMENTS; i++) {
+            assertEquals("c" + (COMMENTS - 1 - i), ids.get(i));
+        }
+        assertEquals(0, statistics.getEntityStatistics("aiss.gitminer.model.Issue").getLoadCount());
+    }
+
+    @Test
+    void newestFirst() throws Exception {
+        MockHttpServletResponse response = mvc.perform(get("/gitminer/issues/i1/comments")
+                        .param("size", "1").param("order", "-createdAt").param("fields", "id,body"))
+                .andExpect(status().isOk()).andReturn().getResponse();
+        JsonNode comments = objectMapper.readTree(response.getContentAsString());
+        assertEquals("c0", comments.get(0).get("id").asText());
+        assertEquals("b", comments.get(0).get("body").asText());
+
+        response = mvc.perform(get("/gitminer/issues/i2/comments")).andReturn().getResponse();
+        assertEquals("other", objectMapper.readTree(response.getContentAsString()).get(0).get("id").asText());
+        assertNull(response.getHeader("X-Next-Cursor"));
+    }
+
+    @Test
+    void rejectsUnknownIssuesAndOtherOrders() throws Exception {
+        mvc.perform(get("/gitminer/issues/unknown/comments")).andExpect(status().isNotFound());
+        mvc.perform(get("/gitminer/issues/i1/comments").param("order", "author.id"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,199 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.repository.ProjectRepository;
+import aiss.gitminer.service.JsonResponseCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:json-response-cache"
+})
+// Without the printing of each response kept in case of failure, which would dominate the CPU measured
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+class JsonResponseCacheTests {
+
+    private static final int ISSUES = 100;
+    private static final int COMMENTS = 5;
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    JsonResponseCache jsonResponseCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < ISSUES; i++) {
+            issues.append(i == 0 ? "" : ",").append("{\"id\":\"i").append(i).append("\",\"title\":\"issue\",")
+                    .append("\"description\":\"description\",\"state\":\"opened\",")
+                    .append("\"labels\":[\"bug\",\"ui\",\"p").append(i % 4).append("\"],")
+                    .append("\"author\":{\"id\":\"u").append(i % 10).append("\",\"username\":\"user\"},")
+                    .append("\"assignee\":{\"id\":\"u").append((i + 1) % 10).append("\",\"username\":\"user\"},")
+                    .append("\"comments\":[");
+            for (int c = 0; c < COMMENTS; c++) {
+                issues.append(c == 0 ? "" : ",").append("{\"id\":\"k").append(i).append('-').append(c)
+                        .append("\",\"body\":\"body\",\"author\":{\"id\":\"u").append(c).append("\",")
+                        .append("\"username\":\"user\"},\"created_at\":\"2023-01-01T00:00:00Z\"}");
+            }
+            issues.append("]}");
+        }
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+        jsonResponseCache.invalidateAll();
+    }
+
+    @Test
+    void cachedBytesAreTheSerializedEntity() throws Exception {
+        JsonNode before = responseStats();
+        byte[] cold = mvc.perform(get("/gitminer/projects/p1")).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/json"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(objectMapper.writeValueAsBytes(projectRepository.findById("p1").get()), cold);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        byte[] warm = mvc.perform(get("/gitminer/projects/p1")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(cold, warm);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount());
+
+        MvcResult gzipped = mvc.perform(get("/gitminer/projects/p1").header(HttpHeaders.ACCEPT_ENCODING, "gzip, br"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+        byte[] gzip = gzipped.getResponse().getContentAsByteArray();
+        assertTrue(gzip.length < cold.length / 4);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(cold, in.readAllBytes());
+        }
+
+        JsonNode after = responseStats();
+        assertEquals(2, after.get("hits").asLong() - before.get("hits").asLong());
+        assertEquals(1, after.get("misses").asLong() - before.get("misses").asLong());
+    }
+
+    @Test
+    void writesChangeWhatIsServed() throws Exception {
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(jsonPath("$.issues[3].state").value("opened"));
+        mvc.perform(get("/gitminer/issues/i3")).andExpect(jsonPath("$.state").value("opened"));
+
+        mvc.perform(put("/gitminer/issues/i3").contentType("application/json")
+                        .content("{\"state\":\"closed\",\"labels\":[\"bug\"],\"votes\":1}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(jsonPath("$.issues[3].state").value("closed"));
+        mvc.perform(get("/gitminer/issues/i3")).andExpect(jsonPath("$.state").value("closed"));
+
+        mvc.perform(delete("/gitminer/issues/i3")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/issues/i3")).andExpect(status().isNotFound());
+        mvc.perform(get("/gitminer/projects/p1")).andExpect(jsonPath("$.issues.length()").value(ISSUES - 1));
+    }
+
+    // Gzipped, as pollers accept it
+    @Test
+    void repeatedReadsSkipLoadingAndSerializing() throws Exception {
+        MockHttpServletRequestBuilder request = get("/gitminer/projects/p1").header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        JsonNode before = responseStats();
+        statistics.clear();
+        mvc.perform(request).andExpect(status().isOk());
+        assertTrue(statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount() > ISSUES);
+
+        statistics.clear();
+        for (int round = 0; round < ROUNDS; round++) {
+            mvc.perform(request).andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        }
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount() + statistics.getSecondLevelCacheHitCount());
+        JsonNode after = responseStats();
+        assertEquals(ROUNDS, after.get("hits").asLong() - before.get("hits").asLong());
+        assertEquals(1, after.get("misses").asLong() - before.get("misses").asLong());
+
+        // A write changes the version, so the next read is serialized again
+        mvc.perform(post("/gitminer/issues/i0/votes:increment")).andExpect(status().isNoContent());
+        mvc.perform(request).andExpect(status().isOk());
+        assertEquals(2, responseStats().get("misses").asLong() - before.get("misses").asLong());
+    }
+
+    // CPU time of the request thread per read, serialized against cached; gzipped as above, and as the mock
+    // response copies bodies byte by byte, unlike a server
+    @Test
+    void cachedResponsesTakeLessCpu() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MockHttpServletRequestBuilder request = get("/gitminer/projects/p1").header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        // Warms up both paths, and the entity cache both read from
+        for (int round = 0; round < 10; round++) {
+            jsonResponseCache.invalidateAll();
+            mvc.perform(request).andExpect(status().isOk());
+            mvc.perform(request).andExpect(status().isOk());
+        }
+
+        long serialized = 0;
+        long cached = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            jsonResponseCache.invalidateAll();
+            long start = threads.getCurrentThreadCpuTime();
+            mvc.perform(request).andExpect(status().isOk());
+            serialized += threads.getCurrentThreadCpuTime() - start;
+
+            start = threads.getCurrentThreadCpuTime();
+            mvc.perform(request).andExpect(status().isOk());
+            cached += threads.getCurrentThreadCpuTime() - start;
+        }
+        assertTrue(cached < serialized);
+    }
+
+    private JsonNode responseStats() throws Exception {
+        JsonNode regions = objectMapper.readTree(mvc.perform(get("/gitminer/cache"))
+                .andReturn().getResponse().getContentAsString());
+        JsonNode responses = regions.get(regions.size() - 1);
+        assertEquals(JsonResponseCache.REGION, responses.get("region").asText());
+        return responses;
+    }
+}
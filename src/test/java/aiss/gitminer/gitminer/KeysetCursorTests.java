@@ -0,0 +1,139 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:keyset-cursor"
+})
+@AutoConfigureMockMvc
+class KeysetCursorTests {
+
+    private static final int COMMITS = 25;
+    private static final int SIZE = 4;
+    private static final int ISSUES = 9;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeAll
+    static void setUp(@Autowired MockMvc mvc) throws Exception {
+        StringBuilder commits = new StringBuilder();
+        for (int c = 0; c < COMMITS; c++) {
+            // Two commits a day, so pages also break ties on the id
+            commits.append(c == 0 ? "" : ",").append("{\"id\":\"").append(id(c))
+                    .append("\",\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author")
+                    .append(c % 3).append("\",\"authored_date\":\"2023-01-").append(String.format("%02d", 1 + c / 2))
+                    .append("T00:00:00Z\",\"web_url\":\"url\"}");
+        }
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < ISSUES; i++) {
+            // Every other issue without an author
+            issues.append(i == 0 ? "" : ",").append("{\"id\":\"i").append(i)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\"")
+                    .append(i % 2 == 0 ? "" : ",\"author\":{\"id\":\"u" + i + "\",\"username\":\"user\"}")
+                    .append("}");
+        }
+        mvc.perform(post("/gitminer/projects").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[" + commits
+                                + "],\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void pagesFollowTheSortKeyThenTheId() throws Exception {
+        Comparator<Integer> byDate = Comparator.comparing(c -> c / 2);
+        List<String> ascending = expected(byDate.thenComparing(KeysetCursorTests::id));
+        List<String> descending = expected(byDate.reversed().thenComparing(Comparator.comparing(
+                KeysetCursorTests::id).reversed()));
+
+        assertEquals(ascending, walk("authoredDate", null));
+        assertEquals(descending, walk("-authoredDate", null));
+        assertEquals(descending, walk("-authoredDate", "id,title"));
+        assertEquals(expected(Comparator.comparing(KeysetCursorTests::id)), walk(null, null));
+    }
+
+    @Test
+    void pagesEndingWithoutTheNestedKeyGoOn() throws Exception {
+        // Pages of two, most of them ending with an issue without an author
+        assertEquals(List.of("i0", "i2", "i4", "i6", "i8", "i1", "i3", "i5", "i7"),
+                walk("/gitminer/issues", "author.id", null, 2));
+        assertEquals(List.of("i7", "i5", "i3", "i1", "i8", "i6", "i4", "i2", "i0"),
+                walk("/gitminer/issues", "-author.id", null, 2));
+    }
+
+    @Test
+    void invalidCursorsAreBadRequests() throws Exception {
+        String cursor = mvc.perform(get("/gitminer/commits").param("order", "authoredDate").param("size", "1")
+                .param("cursor", "")).andReturn().getResponse().getHeader("X-Next-Cursor");
+        assertNotNull(cursor);
+
+        // Not base64, a cursor of another order, a key that is not a date, a missing part
+        for (String invalid : new String[]{"not a cursor!", cursor, forge("ASC\nauthoredDate\n=yesterday\nc00"),
+                forge("ASC\nauthoredDate\nc00")}) {
+            mvc.perform(get("/gitminer/commits").param("order", "authorName").param("cursor", invalid))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(get("/gitminer/commits").param("order", "authoredDate").param("fields", "title")
+                        .param("cursor", forge("ASC\nauthoredDate\n=2023-13-45\nc00")))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/commits").param("order", "authoredDate").param("cursor", cursor))
+                .andExpect(status().isOk());
+    }
+
+    private List<String> walk(String order, String fields) throws Exception {
+        return walk("/gitminer/commits", order, fields, SIZE);
+    }
+
+    private List<String> walk(String uri, String order, String fields, int size) throws Exception {
+        List<String> ids = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            MockHttpServletResponse response = mvc.perform(get(uri).param("order", order)
+                            .param("fields", fields).param("size", String.valueOf(size)).param("cursor", cursor))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            JsonNode page = objectMapper.readTree(response.getContentAsString());
+            page.forEach(entity -> ids.add(entity.get("id").asText()));
+            cursor = response.getHeader("X-Next-Cursor");
+        }
+        return ids;
+    }
+
+    private static List<String> expected(Comparator<Integer> order) {
+        return IntStream.range(0, COMMITS).boxed().sorted(order).map(KeysetCursorTests::id)
+                .collect(Collectors.toList());
+    }
+
+    private static String id(int c) {
+        return String.format("c%02d", c);
+    }
+
+    private static String forge(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:multi-get"
+})
+@AutoConfigureMockMvc
+class MultiGetTests {
+
+    @Autowired
+    MockMvc mvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StringBuilder commits = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            commits.append(i == 0 ? "" : ",").append("{\"id\":\"c").append(i).append("\",\"title\":\"t\",\"message\":\"m\"}");
+        }
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[" + commits
+                                + "],\"issues\":[{\"id\":\"i1\",\"title\":\"t\",\"comments\":[{\"id\":\"cm1\","
+                                + "\"body\":\"b\"}]}]}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void returnsTheEntitiesInRequestOrderWithTheMissingIds() throws Exception {
+        mvc.perform(get("/gitminer/commits").param("ids", "c2,unknown,c0,c2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains("c2", "c0")))
+                .andExpect(jsonPath("$.items[0].message").value("m"))
+                .andExpect(jsonPath("$.missing", contains("unknown")));
+
+        mvc.perform(get("/gitminer/issues").param("ids", "i1"))
+                .andExpect(jsonPath("$.items[0].comments[0].id").value("cm1"))
+                .andExpect(jsonPath("$.missing", empty()));
+        mvc.perform(get("/gitminer/comments").param("ids", "cm1"))
+                .andExpect(jsonPath("$.items[*].id", contains("cm1")));
+        mvc.perform(get("/gitminer/projects").param("ids", "p1,p2"))
+                .andExpect(jsonPath("$.items[*].id", contains("p1")))
+                .andExpect(jsonPath("$.missing", contains("p2")));
+    }
+
+    @Test
+    void acceptsTheIdsInTheBody() throws Exception {
+        mvc.perform(post("/gitminer/commits/lookup").contentType("application/json").content("[\"c1\",\"c9\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains("c1")))
+                .andExpect(jsonPath("$.missing", contains("c9")));
+    }
+}
@@ -0,0 +1,102 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "gitminer.import.parallelism=4",
+        "spring.datasource.url=jdbc:h2:mem:parallel-import"
+})
+@AutoConfigureMockMvc
+class ParallelImportTests {
+
+    private static final int PROJECTS = 20;
+    private static final int ISSUES = 4;
+    private static final int USERS = 3;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM Issue_labels");
+        jdbcTemplate.execute("DELETE FROM Issue");
+        jdbcTemplate.execute("DELETE FROM Project");
+        jdbcTemplate.execute("DELETE FROM GMUser");
+    }
+
+    @Test
+    void projectsSharingUsersAreWrittenConcurrently() throws Exception {
+        mvc.perform(post("/gitminer/projects/bulk").param("parallel", "true").contentType("application/x-ndjson")
+                        .content(ndjson(PROJECTS)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.projects").value(PROJECTS))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        assertEquals(PROJECTS, count("Project"));
+        assertEquals(PROJECTS * ISSUES, count("Issue"));
+        // Each shared author is written once, whichever worker got to it first
+        assertEquals(USERS, count("GMUser"));
+    }
+
+    @Test
+    void malformedRecordsAnswerWithWhatWasWritten() throws Exception {
+        mvc.perform(post("/gitminer/projects/bulk").param("parallel", "true").contentType("application/x-ndjson")
+                        .content(ndjson(PROJECTS) + "{\"id\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.projects").value(PROJECTS))
+                .andExpect(jsonPath("$.entities").value(PROJECTS * (1 + ISSUES * 2)))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0]", startsWith("record " + (PROJECTS + 1) + ": ")));
+
+        // The workers were done before the response, nothing is written after it
+        assertEquals(PROJECTS, count("Project"));
+        assertEquals(PROJECTS * ISSUES, count("Issue"));
+    }
+
+    @Test
+    void sequentialImportsAlsoReportWhatWasWritten() throws Exception {
+        mvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson")
+                        .content(ndjson(PROJECTS) + "{\"id\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.projects").value(0))
+                .andExpect(jsonPath("$.rejected").value(1));
+        // The projects were still in the first chunk, which is never committed
+        assertEquals(0, count("Project"));
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private static String ndjson(int projects) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int p = 0; p < projects; p++) {
+            StringBuilder issues = new StringBuilder();
+            for (int i = 0; i < ISSUES; i++) {
+                int user = (p + i) % USERS;
+                issues.append(i == 0 ? "" : ",").append("{\"id\":\"p").append(p).append("-i").append(i)
+                        .append("\",\"title\":\"issue\",\"state\":\"opened\",\"author\":{\"id\":\"u").append(user)
+                        .append("\",\"username\":\"user").append(user).append("\"}}");
+            }
+            ndjson.append("{\"id\":\"p").append(p).append("\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":[")
+                    .append(issues).append("]}\n");
+        }
+        return ndjson.toString();
+    }
+}
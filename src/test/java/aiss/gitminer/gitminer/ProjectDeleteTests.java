@@ -0,0 +1,101 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.repository.ProjectRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:project-delete"
+})
+@AutoConfigureMockMvc
+class ProjectDeleteTests {
+
+    private static final int COMMITS = 5000;
+    private static final int ISSUES = 1000;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ProjectRepository projectRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void deletesTheWholeGraphButKeepsUsers() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Cascading through JPA loads and deletes the rows one by one
+        create("cascade");
+        statistics.clear();
+        projectRepository.deleteById("cascade");
+        assertEquals(1 + COMMITS + ISSUES * 2, statistics.getEntityDeleteCount());
+        assertEmpty();
+
+        // Whatever the size of the graph, one statement per table
+        create("set-based");
+        statistics.clear();
+        mvc.perform(delete("/gitminer/projects/set-based")).andExpect(status().isNoContent());
+        assertTrue(statistics.getPrepareStatementCount() <= 10, () -> statistics.getPrepareStatementCount()
+                + " statements");
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getEntityDeleteCount());
+        assertEmpty();
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM GMUser", Long.class));
+
+        // Deleting a missing project is a no-op, as before
+        mvc.perform(delete("/gitminer/projects/set-based")).andExpect(status().isNoContent());
+    }
+
+    private void create(String id) throws Exception {
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert")
+                        .contentType("application/json").content(project(id)))
+                .andExpect(status().isOk());
+    }
+
+    private void assertEmpty() {
+        for (String table : new String[]{"Project", "Commit", "Issue", "Issue_labels", "Comment"}) {
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class), table);
+        }
+    }
+
+    private static String project(String id) {
+        StringBuilder sb = new StringBuilder("{\"id\":\"").append(id).append("\",\"name\":\"project\",")
+                .append("\"web_url\":\"url\",\"commits\":[");
+        for (int c = 0; c < COMMITS; c++) {
+            sb.append(c == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-c").append(c)
+                    .append("\",\"title\":\"commit\",\"message\":\"message\"}");
+        }
+        sb.append("],\"issues\":[");
+        for (int i = 0; i < ISSUES; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-i").append(i)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[\"bug\",\"ui\"],")
+                    .append("\"author\":{\"id\":\"u1\",\"username\":\"user\"},\"comments\":[{\"id\":\"")
+                    .append(id).append("-cm").append(i).append("\",\"body\":\"body\",")
+                    .append("\"author\":{\"id\":\"u1\",\"username\":\"user\"}}]}");
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,87 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:project-export"
+})
+@AutoConfigureMockMvc
+class ProjectExportTests {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":[{\"id\":\"c1\","
+                        + "\"title\":\"commit\",\"message\":\"message\",\"authored_date\":\"2023-01-01T00:00:00Z\"}],"
+                        + "\"issues\":[{\"id\":\"i1\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[\"bug\"],"
+                        + "\"author\":{\"id\":\"u1\",\"username\":\"bob\"},\"comments\":[{\"id\":\"cm1\","
+                        + "\"body\":\"body\",\"author\":{\"id\":\"u1\",\"username\":\"bob\"}}]}]}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void exportsOneRecordPerLine() throws Exception {
+        MockHttpServletResponse response = export(false);
+        assertEquals("application/x-ndjson", response.getContentType());
+        String[] lines = response.getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+
+        JsonNode commit = objectMapper.readTree(lines[1]);
+        assertEquals("commit", commit.get("type").asText());
+        assertEquals("message", commit.get("message").asText());
+        assertEquals("2023-01-01T00:00:00Z", commit.get("authored_date").asText());
+        JsonNode issue = objectMapper.readTree(lines[2]);
+        assertEquals("bug", issue.get("labels").get(0).asText());
+        assertEquals("bob", issue.get("author").get("username").asText());
+        JsonNode comment = objectMapper.readTree(lines[3]);
+        assertEquals("i1", comment.get("issue_id").asText());
+        assertEquals("body", comment.get("body").asText());
+    }
+
+    @Test
+    void gzipsTheExportWhenAccepted() throws Exception {
+        MockHttpServletResponse response = export(true);
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        String content = new String(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))
+                .readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(export(false).getContentAsString(StandardCharsets.UTF_8), content);
+    }
+
+    @Test
+    void unknownProjectsAreNotFound() throws Exception {
+        mvc.perform(get("/gitminer/projects/unknown/export")).andExpect(status().isNotFound());
+    }
+
+    private MockHttpServletResponse export(boolean gzip) throws Exception {
+        MvcResult result = mvc.perform(get("/gitminer/projects/p1/export")
+                        .header("Accept-Encoding", gzip ? "gzip, deflate" : "identity"))
+                .andReturn();
+        return mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn().getResponse();
+    }
+}
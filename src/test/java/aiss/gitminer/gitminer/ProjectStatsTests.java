@@ -0,0 +1,72 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:project-stats"
+})
+@AutoConfigureMockMvc
+class ProjectStatsTests {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Test
+    void aggregatesTheProject() throws Exception {
+        mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content("{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\",\"commits\":["
+                                + commit("c1", "alice") + "," + commit("c2", "bob") + "," + commit("c3", "alice")
+                                + "],\"issues\":[" + issue("i1", "closed", "2023-01-01T12:00:00Z", 2) + ","
+                                + issue("i2", "closed", "2023-01-02T00:00:00Z", 1) + ","
+                                + issue("i3", "opened", null, 0) + "]}"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/gitminer/projects/p1/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commits").value(3))
+                .andExpect(jsonPath("$.commits_per_author[0].author_name").value("alice"))
+                .andExpect(jsonPath("$.commits_per_author[0].commits").value(2))
+                .andExpect(jsonPath("$.issues").value(3))
+                .andExpect(jsonPath("$.issues_per_state[0].state").value("closed"))
+                .andExpect(jsonPath("$.issues_per_state[0].issues").value(2))
+                .andExpect(jsonPath("$.closed_issues").value(2))
+                .andExpect(jsonPath("$.mean_seconds_to_close").value(64800.0))
+                .andExpect(jsonPath("$.comments").value(3))
+                .andExpect(jsonPath("$.comments_per_issue").value(1.0))
+                .andExpect(jsonPath("$.max_comments_per_issue").value(2));
+    }
+
+    @Test
+    void unknownProjectsAreNotFound() throws Exception {
+        mvc.perform(get("/gitminer/projects/unknown/stats")).andExpect(status().isNotFound());
+    }
+
+    private static String commit(String id, String author) {
+        return "{\"id\":\"" + id + "\",\"title\":\"t\",\"author_name\":\"" + author + "\"}";
+    }
+
+    // Created at midnight on January 1st
+    private static String issue(String id, String state, String closedAt, int comments) {
+        StringBuilder sb = new StringBuilder("{\"id\":\"").append(id).append("\",\"title\":\"t\",\"state\":\"")
+                .append(state).append("\",\"created_at\":\"2023-01-01T00:00:00Z\"");
+        if (closedAt != null) {
+            sb.append(",\"closed_at\":\"").append(closedAt).append('"');
+        }
+        sb.append(",\"comments\":[");
+        for (int i = 0; i < comments; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-c").append(i)
+                    .append("\",\"body\":\"b\"}");
+        }
+        return sb.append("]}").toString();
+    }
+}
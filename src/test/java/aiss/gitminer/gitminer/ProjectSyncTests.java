@@ -0,0 +1,89 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:project-sync"
+})
+@AutoConfigureMockMvc
+class ProjectSyncTests {
+
+    private static final String PROJECT = "{\"id\":\"%s\",\"name\":\"project\",\"web_url\":\"url\","
+            + "\"commits\":[%s],\"issues\":[{\"id\":\"%s-i1\",\"title\":\"issue\",\"state\":\"opened\","
+            + "\"created_at\":\"2023-01-02T00:00:00Z\",\"comments\":[{\"id\":\"%<s-k1\",\"body\":\"body\","
+            + "\"created_at\":\"2023-01-03T00:00:00Z\"}]}]}";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String id : new String[]{"p1", "p2"}) {
+            mvc.perform(delete("/gitminer/projects/" + id));
+            mvc.perform(post("/gitminer/projects").contentType("application/json")
+                            .content(String.format(PROJECT, id, commit(id + "-c1", "2023-01-01T00:00:00Z"), id)))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    @Test
+    void syncAppendsAndMovesTheWatermark() throws Exception {
+        mvc.perform(get("/gitminer/projects/p1/sync"))
+                .andExpect(jsonPath("$.watermark").value("2023-01-03T00:00:00Z"));
+
+        mvc.perform(post("/gitminer/projects/p1/sync").contentType("application/json")
+                        .content("{\"commits\":[" + commit("p1-c2", "2023-02-01T00:00:00Z") + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.watermark").value("2023-02-01T00:00:00Z"))
+                .andExpect(jsonPath("$.written.commits.inserted").value(1));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Commit WHERE project_id = 'p1'",
+                Long.class));
+
+        mvc.perform(post("/gitminer/projects/missing/sync").contentType("application/json").content("{}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void idsOfAnotherProjectAreRefused() throws Exception {
+        String[] deltas = {
+                "{\"commits\":[" + commit("p2-c1", "2023-02-01T00:00:00Z") + "]}",
+                "{\"issues\":[{\"id\":\"p2-i1\",\"title\":\"taken\",\"state\":\"opened\"}]}",
+                "{\"issues\":[{\"id\":\"p1-i2\",\"title\":\"new\",\"state\":\"opened\","
+                        + "\"comments\":[{\"id\":\"p2-k1\",\"body\":\"taken\"}]}]}"
+        };
+        for (String delta : deltas) {
+            mvc.perform(post("/gitminer/projects/p1/sync").contentType("application/json").content(delta))
+                    .andExpect(status().isConflict());
+        }
+        assertEquals("p2", jdbcTemplate.queryForObject("SELECT project_id FROM Commit WHERE id = 'p2-c1'",
+                String.class));
+        assertEquals("p2", jdbcTemplate.queryForObject("SELECT project_id FROM Issue WHERE id = 'p2-i1'",
+                String.class));
+        assertEquals("p2-i1", jdbcTemplate.queryForObject("SELECT issue_id FROM Comment WHERE id = 'p2-k1'",
+                String.class));
+        // Nothing of a refused delta is written
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Issue WHERE id = 'p1-i2'", Long.class));
+    }
+
+    private static String commit(String id, String authoredDate) {
+        return "{\"id\":\"" + id + "\",\"title\":\"commit\",\"message\":\"message\",\"author_name\":\"author\","
+                + "\"authored_date\":\"" + authoredDate + "\",\"web_url\":\"url\"}";
+    }
+}
@@ -0,0 +1,106 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.service.ProjectDeleteService;
+import aiss.gitminer.service.SearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:search")
+@AutoConfigureMockMvc
+class SearchTests {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    SearchService searchService;
+
+    @Autowired
+    ProjectDeleteService projectDeleteService;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void searchFollowsChangesToTheIndexedTexts() throws Exception {
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content(project()))
+                .andExpect(status().isCreated());
+
+        mvc.perform(get("/gitminer/search").param("q", "Parser"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "3"))
+                .andExpect(jsonPath("$", hasSize(3)));
+        mvc.perform(get("/gitminer/search").param("q", "parser").param("type", "issue,comment"))
+                .andExpect(header().string("X-Total-Count", "2"));
+        mvc.perform(get("/gitminer/search").param("q", "parser").param("size", "1").param("page", "2"))
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        mvc.perform(put("/gitminer/commits/c1").contentType("application/json").content("{\"id\":\"c1\","
+                        + "\"title\":\"Rename lexer\",\"message\":\"lexer\",\"author_name\":\"a\","
+                        + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"w\"}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/search").param("q", "lexer parser"))
+                .andExpect(jsonPath("$[0].type").value("commit"))
+                .andExpect(jsonPath("$[0].id").value("c1"));
+
+        // The comment goes with its issue
+        mvc.perform(delete("/gitminer/issues/i1")).andExpect(status().isNoContent());
+        mvc.perform(get("/gitminer/search").param("q", "parser"))
+                .andExpect(header().string("X-Total-Count", "0"));
+    }
+
+    @Test
+    void deletedProjectsLeaveTheIndexOnceCommitted() throws Exception {
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content("{\"id\":\"p2\","
+                        + "\"name\":\"n\",\"web_url\":\"u\",\"commits\":[{\"id\":\"c2\",\"title\":\"Rewrite tokenizer\","
+                        + "\"message\":\"m\",\"author_name\":\"a\",\"authored_date\":\"2023-01-01T00:00:00Z\","
+                        + "\"web_url\":\"w\"}]}"))
+                .andExpect(status().isCreated());
+        assertEquals(1, tokenizerHits());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            projectDeleteService.deleteProject("p2");
+            assertEquals(1, tokenizerHits());
+            status.setRollbackOnly();
+        });
+        assertEquals(1, tokenizerHits());
+
+        mvc.perform(delete("/gitminer/projects/p2")).andExpect(status().isNoContent());
+        assertEquals(0, tokenizerHits());
+    }
+
+    @Test
+    void unknownTypesAreRejected() throws Exception {
+        mvc.perform(get("/gitminer/search").param("q", "parser").param("type", "user"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long tokenizerHits() {
+        return searchService.search("tokenizer", Collections.emptySet(), 0, 10).getTotal();
+    }
+
+    private static String project() {
+        return "{\"id\":\"p1\",\"name\":\"n\",\"web_url\":\"u\",\"commits\":[{\"id\":\"c1\",\"title\":\"Fix parser crash\","
+                + "\"message\":\"crashed on empty input\",\"author_name\":\"a\",\"authored_date\":\"2023-01-01T00:00:00Z\","
+                + "\"web_url\":\"w\"}],"
+                + "\"issues\":[{\"id\":\"i1\",\"title\":\"Parser is slow\",\"description\":\"very slow\",\"state\":\"opened\","
+                + "\"author\":{\"id\":\"u1\",\"username\":\"bob\"},\"comments\":[{\"id\":\"cm1\",\"body\":\"the parser again\","
+                + "\"created_at\":\"2023-01-01T00:00:00Z\",\"author\":{\"id\":\"u1\",\"username\":\"bob\"}}]}]}";
+    }
+}
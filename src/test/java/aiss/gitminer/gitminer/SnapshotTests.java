@@ -0,0 +1,124 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.GitMinerApplication;
+import aiss.gitminer.service.SnapshotService;
+import aiss.gitminer.service.SnapshotStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotTests {
+
+    private static final String COUNT_PROJECTS = "SELECT COUNT(*) FROM Project";
+    private static final String MAX_VERSION = "SELECT MAX(version) FROM Project";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresTheSnapshotIntoAnEmptyDatabase() throws Exception {
+        Path path = directory.resolve("gitminer.snapshot");
+        long written;
+        long version;
+
+        try (ConfigurableApplicationContext context = start("snapshot-written", path)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("INSERT INTO Project (id, name, web_url) VALUES ('p1', 'project', 'url')");
+            jdbcTemplate.update("INSERT INTO Project (id, name, web_url) VALUES ('p2', 'project', 'url')");
+            jdbcTemplate.update("UPDATE Project SET name = 'renamed' WHERE id = 'p1'");
+            version = jdbcTemplate.queryForObject(MAX_VERSION, Long.class);
+
+            SnapshotStatus status = context.getBean(SnapshotService.class).snapshot();
+            assertNull(status.getRestoredAt());
+            assertTrue(Files.size(path) > 0);
+            written = status.getLastWriteRows();
+            assertTrue(written >= 2);
+        }
+
+        try (ConfigurableApplicationContext context = start("snapshot-restored", path)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertEquals(written, context.getBean(SnapshotService.class).getStatus().getRestoreRows());
+            assertEquals(2, jdbcTemplate.queryForObject(COUNT_PROJECTS, Long.class));
+            assertEquals("renamed", jdbcTemplate.queryForObject("SELECT name FROM Project WHERE id = 'p1'",
+                    String.class));
+            assertEquals(version, jdbcTemplate.queryForObject(MAX_VERSION, Long.class));
+
+            // New versions do not repeat the restored ones
+            jdbcTemplate.update("INSERT INTO Project (id, name, web_url) VALUES ('p3', 'project', 'url')");
+            assertTrue(jdbcTemplate.queryForObject("SELECT version FROM Project WHERE id = 'p3'", Long.class)
+                    > version);
+        }
+    }
+
+    @Test
+    void doesNotRestoreIntoADatabaseWithData() throws Exception {
+        Path path = directory.resolve("gitminer.snapshot");
+        try (ConfigurableApplicationContext context = start("snapshot-source", path)) {
+            context.getBean(JdbcTemplate.class)
+                    .update("INSERT INTO Project (id, name, web_url) VALUES ('p1', 'project', 'url')");
+            context.getBean(SnapshotService.class).snapshot();
+        }
+
+        // A database kept open across contexts, filled before the snapshot is there to restore
+        String kept = "snapshot-kept;DB_CLOSE_DELAY=-1";
+        try (ConfigurableApplicationContext context = start(kept, directory.resolve("other.snapshot"))) {
+            context.getBean(JdbcTemplate.class)
+                    .update("INSERT INTO Project (id, name, web_url) VALUES ('p9', 'project', 'url')");
+        }
+        try (ConfigurableApplicationContext context = start(kept, path)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertNull(context.getBean(SnapshotService.class).getStatus().getRestoredAt());
+            assertEquals(1, jdbcTemplate.queryForObject(COUNT_PROJECTS, Long.class));
+            assertEquals("p9", jdbcTemplate.queryForObject("SELECT id FROM Project", String.class));
+        }
+    }
+
+    @Test
+    void skipsSnapshotsOfAnotherFormatVersion() throws Exception {
+        Path path = directory.resolve("gitminer.snapshot");
+        // A snapshot of the first format, whose dates were strings
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(0x474d534e);
+            out.writeInt(1);
+            out.writeUTF("COMMIT");
+            out.writeInt(2);
+            out.writeUTF("ID");
+            out.writeUTF("AUTHORED_DATE");
+            out.writeByte(1);
+            out.writeByte(1);
+            out.writeInt(2);
+            out.write("c1".getBytes(StandardCharsets.UTF_8));
+            out.writeByte(1);
+            out.writeInt(9);
+            out.write("yesterday".getBytes(StandardCharsets.UTF_8));
+            out.writeByte(0);
+            out.writeUTF("");
+        }
+
+        try (ConfigurableApplicationContext context = start("snapshot-old-format", path)) {
+            assertNull(context.getBean(SnapshotService.class).getStatus().getRestoredAt());
+            assertEquals(0, context.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM Commit",
+                    Long.class));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String database, Path path) {
+        // As arguments, which application.properties does not override
+        return new SpringApplicationBuilder(GitMinerApplication.class).run("--server.port=0",
+                "--spring.jpa.show-sql=false", "--gitminer.snapshot.enabled=true",
+                "--gitminer.snapshot.path=" + path,
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_ON_EXIT=FALSE");
+    }
+}
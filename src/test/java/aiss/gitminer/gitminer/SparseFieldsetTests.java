@@ -0,0 +1,114 @@
+package aiss.gitminer.gitminer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "spring.datasource.url=jdbc:h2:mem:sparse-fieldset"
+})
+@AutoConfigureMockMvc
+class SparseFieldsetTests {
+
+    private static final int ISSUES = 30;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    static void setUp(@Autowired MockMvc mvc) throws Exception {
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < ISSUES; i++) {
+            issues.append(i == 0 ? "" : ",").append("{\"id\":\"i").append(i).append("\",\"title\":\"issue ").append(i)
+                    .append("\",\"state\":\"opened\",\"labels\":[\"bug\"],\"author\":{\"id\":\"u").append(i % 3)
+                    .append("\",\"username\":\"user").append(i % 3).append("\"},\"comments\":[{\"id\":\"k").append(i)
+                    .append("\",\"body\":\"body\",\"created_at\":\"2023-01-02T00:00:00Z\"}]}");
+        }
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content("{\"id\":\"p1\","
+                        + "\"name\":\"project\",\"web_url\":\"url\",\"commits\":[{\"id\":\"c1\",\"title\":\"commit\","
+                        + "\"message\":\"message\",\"author_name\":\"author\",\"authored_date\":\"2023-01-01T00:00:00Z\","
+                        + "\"web_url\":\"url\"}],\"issues\":[" + issues + "]}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void onlyTheRequestedFieldsAreReturned() throws Exception {
+        JsonNode project = read("/gitminer/projects/p1?fields=id,name");
+        assertEquals(Set.of("id", "name"), names(project));
+        assertEquals("project", project.get("name").asText());
+
+        project = read("/gitminer/projects/p1?fields=id,issues.title,issues.author.username,commits.message");
+        assertEquals(Set.of("id", "issues", "commits"), names(project));
+        assertEquals(ISSUES, project.get("issues").size());
+        JsonNode issue = project.get("issues").get(0);
+        assertEquals(Set.of("title", "author"), names(issue));
+        assertEquals(Set.of("username"), names(issue.get("author")));
+        // Compressed texts are inflated when requested
+        assertEquals("message", project.get("commits").get(0).get("message").asText());
+
+        JsonNode page = read("/gitminer/issues?fields=id,labels,comments.body&size=5");
+        assertEquals(5, page.size());
+        assertEquals(Set.of("id", "labels", "comments"), names(page.get(0)));
+        assertEquals("bug", page.get(0).get("labels").get(0).asText());
+        assertEquals("body", page.get(0).get("comments").get(0).get("body").asText());
+    }
+
+    @Test
+    void projectionsReadColumnsWithoutLoadingEntities() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        read("/gitminer/projects/p1?fields=id,issues.title,issues.author.username,issues.comments.body");
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+        // The project, then one query per level of collections, whatever the number of issues
+        assertTrue(statistics.getPrepareStatementCount() <= 4, () -> statistics.getPrepareStatementCount()
+                + " statements");
+    }
+
+    @Test
+    void unknownFieldsAreBadRequests() throws Exception {
+        mvc.perform(get("/gitminer/projects/p1").param("fields", "id,owner")).andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/projects/p1").param("fields", "issues.owner")).andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/issues").param("fields", "title.length")).andExpect(status().isBadRequest());
+        mvc.perform(get("/gitminer/projects/missing").param("fields", "id")).andExpect(status().isNotFound());
+    }
+
+    private JsonNode read(String uri) throws Exception {
+        return objectMapper.readTree(mvc.perform(get(uri)).andExpect(status().isOk()).andReturn().getResponse()
+                .getContentAsString());
+    }
+
+    private static Set<String> names(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return new TreeSet<>(names);
+    }
+}
@@ -0,0 +1,91 @@
+package aiss.gitminer.gitminer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:upsert"
+})
+@AutoConfigureMockMvc
+class UpsertTests {
+
+    private static final String PROJECT = "{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\","
+            + "\"commits\":[{\"id\":\"c1\",\"title\":\"%s\",\"message\":\"message\",\"author_name\":\"author\","
+            + "\"authored_date\":\"2023-01-01T00:00:00Z\",\"web_url\":\"url\"}],"
+            + "\"issues\":[{\"id\":\"i1\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[%s],"
+            + "\"author\":{\"id\":\"u1\",\"username\":\"author\"},"
+            + "\"comments\":[{\"id\":\"k1\",\"body\":\"body\",\"author\":{\"id\":\"u1\",\"username\":\"author\"}}]}]}";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        mvc.perform(delete("/gitminer/projects/p1"));
+    }
+
+    @Test
+    void reportsInsertedUpdatedAndUnchangedRows() throws Exception {
+        upsert("commit", "\"bug\", \"ui\"")
+                .andExpect(jsonPath("$.projects.inserted").value(1))
+                .andExpect(jsonPath("$.users.inserted").value(1))
+                .andExpect(jsonPath("$.commits.inserted").value(1))
+                .andExpect(jsonPath("$.issues.inserted").value(1))
+                .andExpect(jsonPath("$.comments.inserted").value(1));
+
+        // The same document writes nothing
+        upsert("commit", "\"ui\", \"bug\"")
+                .andExpect(jsonPath("$.projects.unchanged").value(1))
+                .andExpect(jsonPath("$.users.unchanged").value(1))
+                .andExpect(jsonPath("$.commits.unchanged").value(1))
+                .andExpect(jsonPath("$.issues.unchanged").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+
+        upsert("changed", "\"ui\", \"bug\"")
+                .andExpect(jsonPath("$.commits.updated").value(1))
+                .andExpect(jsonPath("$.issues.unchanged").value(1));
+        assertEquals("changed", jdbcTemplate.queryForObject("SELECT title FROM Commit WHERE id = 'c1'", String.class));
+    }
+
+    @Test
+    void labelsAloneUpdateTheIssueAndAreReplaced() throws Exception {
+        upsert("commit", "\"bug\", \"ui\"");
+        upsert("commit", "\"feature\"")
+                .andExpect(jsonPath("$.issues.updated").value(1))
+                .andExpect(jsonPath("$.comments.unchanged").value(1));
+        assertEquals(List.of("feature"), labels());
+
+        upsert("commit", "")
+                .andExpect(jsonPath("$.issues.updated").value(1));
+        assertEquals(List.of(), labels());
+    }
+
+    private ResultActions upsert(String commitTitle, String labels) throws Exception {
+        return mvc.perform(post("/gitminer/projects").param("mode", "upsert").contentType("application/json")
+                        .content(String.format(PROJECT, commitTitle, labels)))
+                .andExpect(status().isOk());
+    }
+
+    private List<String> labels() {
+        return jdbcTemplate.queryForList("SELECT labels FROM Issue_labels WHERE issue_id = 'i1' ORDER BY labels",
+                String.class);
+    }
+}
@@ -0,0 +1,81 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "gitminer.import.chunk-size=200",
+        "spring.datasource.url=jdbc:h2:mem:user-identity-cache"
+})
+@AutoConfigureMockMvc
+class UserIdentityCacheTests {
+
+    private static final int PROJECTS = 1000;
+    private static final int ISSUES_PER_PROJECT = 10;
+    private static final int AUTHORS = 5;
+    private static final int COMMENTERS = 7;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void eachDistinctUserIsWrittenOncePerImport() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String projects = projects();
+
+        statistics.clear();
+        mvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(projects))
+                .andExpect(status().isCreated());
+        EntityStatistics users = statistics.getEntityStatistics(User.class.getName());
+        assertEquals(COMMENTERS, users.getInsertCount());
+        assertEquals(0, users.getLoadCount());
+
+        statistics.clear();
+        mvc.perform(post("/gitminer/projects/bulk").contentType("application/x-ndjson").content(projects))
+                .andExpect(status().isCreated());
+        users = statistics.getEntityStatistics(User.class.getName());
+        assertEquals(0, users.getInsertCount());
+        assertEquals(0, users.getUpdateCount());
+        // Read once each, from the database or the second-level cache
+        assertEquals(COMMENTERS, users.getLoadCount() + users.getCacheHitCount());
+    }
+
+    private static String projects() {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < PROJECTS; p++) {
+            sb.append("{\"id\":\"p").append(p).append("\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":[");
+            for (int i = p * ISSUES_PER_PROJECT; i < (p + 1) * ISSUES_PER_PROJECT; i++) {
+                sb.append(i % ISSUES_PER_PROJECT == 0 ? "" : ",")
+                        .append("{\"id\":\"i").append(i).append("\",\"title\":\"issue\",\"state\":\"opened\",")
+                        .append("\"author\":").append(user(i % AUTHORS)).append(",\"comments\":[{\"id\":\"c")
+                        .append(i).append("\",\"body\":\"body\",\"created_at\":\"2023-01-01T00:00:00Z\",")
+                        .append("\"author\":").append(user(i % COMMENTERS)).append("}]}");
+            }
+            sb.append("]}\n");
+        }
+        return sb.toString();
+    }
+
+    private static String user(int id) {
+        return "{\"id\":\"u" + id + "\",\"username\":\"user" + id + "\"}";
+    }
+}
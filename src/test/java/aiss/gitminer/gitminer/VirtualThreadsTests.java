@@ -0,0 +1,225 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.GitMinerApplication;
+import aiss.gitminer.service.LimitedDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadsTests {
+
+    // Tomcat threads in platform mode, all of them taken by the slow uploads
+    private static final int THREADS = 8;
+    private static final int UPLOADS = 8;
+    private static final int UPLOAD_MILLIS = 2000;
+    private static final int CLIENTS = 4;
+
+    @Test
+    void connectionsAreHandedOutUpToThePermits() throws Exception {
+        LimitedDataSource dataSource = new LimitedDataSource(h2("limited-permits"), 2, 100, thread -> true);
+
+        Connection first = dataSource.getConnection();
+        try (Connection second = dataSource.getConnection()) {
+            assertEquals(0, dataSource.getAvailablePermits());
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertTrue(second.isValid(1));
+        }
+        assertEquals(1, dataSource.getAvailablePermits());
+        first.close();
+        first.close();
+        assertEquals(2, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    void waitingThreadsGetTheConnectionGivenBack() throws Exception {
+        LimitedDataSource dataSource = new LimitedDataSource(h2("limited-waiting"), 1, 10000, thread -> true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection first = dataSource.getConnection();
+            Future<Boolean> waiting = executor.submit(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    return connection.isValid(1);
+                }
+            });
+            for (int attempt = 0; attempt < 200 && dataSource.getWaiting() == 0; attempt++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, dataSource.getWaiting());
+            assertFalse(waiting.isDone());
+
+            first.close();
+            assertTrue(waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(0, dataSource.getWaiting());
+            assertEquals(1, dataSource.getAvailablePermits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void threadsNotLimitedTakeNoPermits() throws Exception {
+        Thread limited = Thread.currentThread();
+        LimitedDataSource dataSource = new LimitedDataSource(h2("limited-threads"), 1, 100,
+                thread -> thread == limited);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection request = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            // Background work still gets a connection of the pool
+            try (Connection background = executor.submit(() -> dataSource.getConnection()).get()) {
+                assertTrue(background.isValid(1));
+            }
+            assertEquals(0, dataSource.getAvailablePermits());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    // Fast reads of a project during a burst of uploads trickled by slow clients, in each mode
+    @Test
+    @EnabledIf("virtualThreadsAvailable")
+    void fastRequestsDoNotQueueBehindSlowOnes() throws Exception {
+        Result platform = benchmark("platform");
+        Result virtual = benchmark("virtual");
+        assertTrue(virtual.p99 < platform.p99);
+        assertTrue(virtual.throughput > platform.throughput);
+    }
+
+    static boolean virtualThreadsAvailable() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    private Result benchmark(String mode) throws Exception {
+        // As arguments, which application.properties does not override
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(GitMinerApplication.class).run(
+                "--server.port=0", "--gitminer.threads.mode=" + mode, "--server.tomcat.threads.max=" + THREADS,
+                "--server.tomcat.threads.min-spare=" + THREADS, "--spring.jpa.show-sql=false",
+                "--spring.datasource.url=jdbc:h2:mem:threads-" + mode);
+        ExecutorService executor = Executors.newFixedThreadPool(UPLOADS + CLIENTS);
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<String> created = client.send(HttpRequest.newBuilder(uri(port, "/gitminer/projects"))
+                    .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(
+                            project("p0"))).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(201, created.statusCode());
+
+            List<Future<?>> uploads = new ArrayList<>();
+            for (int i = 1; i <= UPLOADS; i++) {
+                String body = project("p" + i);
+                uploads.add(executor.submit(() -> upload(port, body)));
+            }
+            // The uploads have all started before the reads do
+            Thread.sleep(UPLOAD_MILLIS / 10);
+
+            long start = System.nanoTime();
+            long end = start + UPLOAD_MILLIS * 1_000_000L;
+            List<Future<List<Long>>> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(executor.submit(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    HttpRequest read = HttpRequest.newBuilder(uri(port, "/gitminer/projects/p0")).build();
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        assertEquals(200, client.send(read, HttpResponse.BodyHandlers.discarding()).statusCode());
+                        latencies.add(System.nanoTime() - sent);
+                    }
+                    return latencies;
+                }));
+            }
+            List<Long> latencies = new ArrayList<>();
+            for (Future<List<Long>> latenciesOfClient : clients) {
+                latencies.addAll(latenciesOfClient.get());
+            }
+            long elapsed = System.nanoTime() - start;
+            for (Future<?> upload : uploads) {
+                upload.get();
+            }
+            Collections.sort(latencies);
+            return new Result(latencies.size() * 1e9 / elapsed,
+                    latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1) / 1_000_000.0);
+        } finally {
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    // Sends the headers, then the body in ten parts over UPLOAD_MILLIS, holding the thread that reads it
+    private static Void upload(int port, String body) throws Exception {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /gitminer/projects HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + bytes.length + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            int parts = 10;
+            for (int i = 0; i < parts; i++) {
+                Thread.sleep(UPLOAD_MILLIS / parts);
+                out.write(bytes, bytes.length * i / parts, bytes.length * (i + 1) / parts - bytes.length * i / parts);
+                out.flush();
+            }
+            String status = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII)).readLine();
+            assertTrue(status.startsWith("HTTP/1.1 201"), status);
+        }
+        return null;
+    }
+
+    private static String project(String id) {
+        StringBuilder issues = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            issues.append(i == 0 ? "" : ",").append("{\"id\":\"").append(id).append("-i").append(i)
+                    .append("\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[\"bug\"]}");
+        }
+        return "{\"id\":\"" + id + "\",\"name\":\"project\",\"web_url\":\"url\",\"issues\":[" + issues + "]}";
+    }
+
+    private static DataSource h2(String database) {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + database);
+        return h2;
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static class Result {
+
+        private final double throughput;
+        private final double p99;
+
+        private Result(double throughput, double p99) {
+            this.throughput = throughput;
+            this.p99 = p99;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package aiss.gitminer.gitminer;
+
+import aiss.gitminer.service.IssueWriteBehindBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The window is longer than the tests, which flush the buffer themselves
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "gitminer.issues.write-behind.enabled=true",
+        "gitminer.issues.write-behind.window=3600000",
+        "spring.datasource.url=jdbc:h2:mem:write-behind"
+})
+@AutoConfigureMockMvc
+class WriteBehindTests {
+
+    private static final String PROJECT = "{\"id\":\"p1\",\"name\":\"project\",\"web_url\":\"url\","
+            + "\"issues\":[{\"id\":\"i1\",\"title\":\"issue\",\"state\":\"opened\",\"labels\":[\"bug\"],\"votes\":0}]}";
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    IssueWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        buffer.flush();
+        buffer.flush();
+        mvc.perform(delete("/gitminer/projects/p1"));
+        mvc.perform(post("/gitminer/projects").contentType("application/json").content(PROJECT))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void updatesAreCoalescedAndOverlaidUntilFlushed() throws Exception {
+        update("opened", "\"ui\"", 1);
+        update("closed", "\"ui\", \"triaged\"", 2);
+        assertEquals(1, buffer.getPending());
+        assertEquals(0, votes());
+        assertEquals("opened", jdbcTemplate.queryForObject("SELECT state FROM Issue WHERE id = 'i1'", String.class));
+
+        // Every way of reading the issue shows the buffered update
+        mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(jsonPath("$.state").value("closed"))
+                .andExpect(jsonPath("$.votes").value(2))
+                .andExpect(jsonPath("$.labels", contains("ui", "triaged")))
+                .andExpect(jsonPath("$.closed_at").exists());
+        mvc.perform(get("/gitminer/issues/i1").param("fields", "state,votes"))
+                .andExpect(jsonPath("$.state").value("closed"))
+                .andExpect(jsonPath("$.votes").value(2));
+        mvc.perform(get("/gitminer/issues").param("ids", "i1"))
+                .andExpect(jsonPath("$.items[0].votes").value(2));
+
+        buffer.flush();
+        assertEquals(0, buffer.getPending());
+        assertEquals(2, votes());
+        assertNotNull(jdbcTemplate.queryForObject("SELECT closed_at FROM Issue WHERE id = 'i1'", Object.class));
+        assertEquals(List.of("triaged", "ui"), jdbcTemplate.queryForList(
+                "SELECT labels FROM Issue_labels WHERE issue_id = 'i1' ORDER BY labels", String.class));
+        // Still overlaid for one window, then served as stored
+        assertTrue(buffer.isBuffered("i1"));
+        buffer.flush();
+        assertFalse(buffer.isBuffered("i1"));
+        mvc.perform(get("/gitminer/issues/i1"))
+                .andExpect(jsonPath("$.state").value("closed"))
+                .andExpect(jsonPath("$.votes").value(2));
+    }
+
+    @Test
+    void writesAroundTheBufferSettleItFirst() throws Exception {
+        update("opened", "\"bug\"", 5);
+        mvc.perform(post("/gitminer/issues/i1/votes:increment")).andExpect(status().isNoContent());
+        assertEquals(6, votes());
+        assertFalse(buffer.isBuffered("i1"));
+        mvc.perform(get("/gitminer/issues/i1")).andExpect(jsonPath("$.votes").value(6));
+    }
+
+    @Test
+    void updatesOfDeletedIssuesAreDropped() throws Exception {
+        update("opened", "\"bug\"", 5);
+        mvc.perform(delete("/gitminer/projects/p1")).andExpect(status().isNoContent());
+        buffer.flush();
+        assertEquals(0, buffer.getPending());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Issue_labels WHERE issue_id = 'i1'",
+                Long.class));
+    }
+
+    private void update(String state, String labels, int votes) throws Exception {
+        mvc.perform(put("/gitminer/issues/i1").contentType("application/json").content("{\"title\":\"issue\","
+                        + "\"state\":\"" + state + "\",\"labels\":[" + labels + "],\"votes\":" + votes + "}"))
+                .andExpect(status().isNoContent());
+    }
+
+    private int votes() {
+        return jdbcTemplate.queryForObject("SELECT votes FROM Issue WHERE id = 'i1'", Integer.class);
+    }
+}